@@ -0,0 +1,139 @@
+package org.jenkinsci.plugins.pipeline.milestone;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.MoreExecutors;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import hudson.model.Result;
+import hudson.model.Run;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
+import jenkins.util.Timer;
+import org.jenkinsci.plugins.workflow.flow.FlowExecution;
+import org.jenkinsci.plugins.workflow.flow.FlowExecutionOwner;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.jenkinsci.plugins.workflow.steps.FlowInterruptedException;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Escalates the cancellation of superseded builds which keep running after being interrupted,
+ * as when stuck in a step ignoring interruptions, so that they release their executors and agents.
+ * <p>
+ * {@link #TERM_SECONDS} after being cancelled at a milestone, a build still running gets its steps terminated
+ * as with {@link WorkflowRun#doTerm()}, then {@link #KILL_SECONDS} later it gets killed as with {@link WorkflowRun#doKill()}.
+ * Each escalation is a task scheduled on the shared {@link Timer}, looking the build up by its externalizable id when it runs.
+ * Disabled unless {@link #TERM_SECONDS} is set.
+ * <p>
+ * Terminating only needs the {@link FlowExecution} of the build. Killing has no equivalent outside of {@link WorkflowRun},
+ * so it is skipped unless the optional {@code workflow-job} plugin is installed, and {@link Kill} is the only class referring to it.
+ */
+@Restricted(NoExternalUse.class)
+public final class CancellationEscalator {
+    private static final Logger LOGGER = Logger.getLogger(CancellationEscalator.class.getName());
+
+    @SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "for script console")
+    public static /* non-final for script console */ long TERM_SECONDS = SystemProperties.getLong(CancellationEscalator.class.getName() + ".termSeconds", 0L);
+
+    @SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "for script console")
+    public static /* non-final for script console */ long KILL_SECONDS = SystemProperties.getLong(CancellationEscalator.class.getName() + ".killSeconds", 0L);
+
+    /**
+     * Next escalation of each cancelled build still running, by externalizable id.
+     */
+    private static final Map<String, ScheduledFuture<?>> PENDING = new ConcurrentHashMap<>();
+
+    private CancellationEscalator() {}
+
+    /**
+     * Called once a build got interrupted for being superseded.
+     */
+    static void onInterrupted(@NonNull Run<?, ?> run) {
+        if (TERM_SECONDS > 0 && run instanceof FlowExecutionOwner.Executable) {
+            PENDING.computeIfAbsent(run.getExternalizableId(), id -> schedule(id, TERM_SECONDS, CancellationEscalator::term));
+        }
+    }
+
+    static void onCompleted(@NonNull Run<?, ?> run) {
+        if (PENDING.isEmpty()) {
+            return;
+        }
+        var escalation = PENDING.remove(run.getExternalizableId());
+        if (escalation != null) {
+            escalation.cancel(false);
+        }
+    }
+
+    private static ScheduledFuture<?> schedule(String externalizableId, long seconds, Consumer<Run<?, ?>> escalation) {
+        return Timer.get().schedule(() -> {
+            try (ACLContext ignored = ACL.as2(ACL.SYSTEM2)) {
+                Run<?, ?> run = Run.fromExternalizableId(externalizableId);
+                if (run == null || !run.isBuilding()) {
+                    PENDING.remove(externalizableId);
+                    return;
+                }
+                escalation.accept(run);
+            } catch (RuntimeException x) {
+                LOGGER.log(Level.WARNING, x, () -> "Could not escalate the cancellation of " + externalizableId);
+            }
+        }, seconds, TimeUnit.SECONDS);
+    }
+
+    private static void term(Run<?, ?> run) {
+        LOGGER.info(() -> run + " still running " + TERM_SECONDS + "s after being superseded, terminating its steps");
+        MilestoneStatistics.get().onEscalated(run);
+        if (KILL_SECONDS > 0 && Jenkins.get().getPlugin("workflow-job") != null) {
+            PENDING.put(run.getExternalizableId(), schedule(run.getExternalizableId(), KILL_SECONDS, Kill::kill));
+        } else {
+            PENDING.remove(run.getExternalizableId());
+        }
+        FlowExecution execution;
+        try {
+            execution = ((FlowExecutionOwner.Executable) run).asFlowExecutionOwner().get();
+        } catch (IOException x) {
+            LOGGER.log(Level.WARNING, x, () -> "Could not terminate the steps of " + run);
+            return;
+        }
+        Futures.addCallback(execution.getCurrentExecutions(true), new FutureCallback<>() {
+            @Override
+            public void onSuccess(List<StepExecution> executions) {
+                for (StepExecution e : executions) {
+                    e.getContext().onFailure(new FlowInterruptedException(Result.ABORTED, false));
+                }
+            }
+
+            @Override
+            public void onFailure(@NonNull Throwable t) {
+                LOGGER.log(Level.WARNING, t, () -> "Could not terminate the steps of " + run);
+            }
+        }, MoreExecutors.directExecutor());
+    }
+
+    /**
+     * Only loaded when {@code workflow-job} is installed.
+     */
+    private static final class Kill {
+        static void kill(Run<?, ?> run) {
+            PENDING.remove(run.getExternalizableId());
+            if (!(run instanceof WorkflowRun workflowRun)) {
+                return;
+            }
+            LOGGER.warning(() -> run + " still running " + KILL_SECONDS + "s after its steps got terminated, killing it");
+            MilestoneStatistics.get().onEscalated(run);
+            workflowRun.doKill();
+        }
+    }
+}
@@ -23,43 +23,137 @@
  */
 package org.jenkinsci.plugins.pipeline.milestone;
 
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import hudson.model.Job;
 import hudson.model.Run;
+import java.io.Serial;
+import java.util.Objects;
 import jenkins.model.CauseOfInterruption;
+import org.kohsuke.stapler.Stapler;
+import org.kohsuke.stapler.StaplerRequest2;
 import org.kohsuke.stapler.export.Exported;
 
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
 import edu.umd.cs.findbugs.annotations.Nullable;
 
 /**
  * Records that a build was canceled because it reached a milestone but a newer build already passed it, or
  * a newer build from the last milestone the build passed.
+ * <p>
+ * All builds cancelled by the same newer build share one instance, see {@link #of(Job, Run)}.
+ * To keep {@code build.xml} small, the newer build is recorded by its number when it belongs to the job of the cancelled build,
+ * and its display name only when it differs from its number.
  */
 public final class CancelledCause extends CauseOfInterruption {
 
     private static final long serialVersionUID = 1;
 
-    private final String newerBuild;
+    private static final Interner<CancelledCause> INTERNER = Interners.newWeakInterner();
 
+    /**
+     * Number of the newer build.
+     */
+    private final int number;
+
+    /**
+     * Full name of the job of the newer build, {@code null} when it is the job of the cancelled build.
+     */
+    @CheckForNull
+    private final String job;
+
+    /**
+     * Display name of the newer build, {@code null} when it is the default one.
+     */
+    @CheckForNull
     private final String displayName;
 
-    CancelledCause(Run<?,?> newerBuild) {
-        this.newerBuild = newerBuild.getExternalizableId();
-        this.displayName = newerBuild.getDisplayName();
+    /**
+     * Externalizable id of the newer build, only in older records.
+     */
+    @Deprecated
+    @CheckForNull
+    private String newerBuild;
+
+    private CancelledCause(int number, @CheckForNull String job, @CheckForNull String displayName) {
+        this.number = number;
+        this.job = job;
+        this.displayName = displayName == null || displayName.equals("#" + number) || displayName.equals(job + "#" + number) ? null : displayName;
+    }
+
+    /**
+     * @param cancelled the job of the cancelled build
+     * @param newerBuild the build causing the cancellation
+     * @return the cause shared by all builds of {@code cancelled} cancelled by {@code newerBuild}
+     */
+    @NonNull
+    static CancelledCause of(@NonNull Job<?, ?> cancelled, @NonNull Run<?, ?> newerBuild) {
+        Job<?, ?> job = newerBuild.getParent();
+        return INTERNER.intern(new CancelledCause(newerBuild.getNumber(), job == cancelled ? null : job.getFullName(), newerBuild.getDisplayName()));
+    }
+
+    /**
+     * @param cancelled the job of the cancelled build
+     * @param newerBuild the externalizable id of the build causing the cancellation
+     * @return the cause shared by all builds of {@code cancelled} cancelled by {@code newerBuild}
+     */
+    @NonNull
+    static CancelledCause of(@NonNull Job<?, ?> cancelled, @NonNull String newerBuild) {
+        int hash = newerBuild.lastIndexOf('#');
+        String job = newerBuild.substring(0, hash);
+        return INTERNER.intern(new CancelledCause(Integer.parseInt(newerBuild.substring(hash + 1)),
+                job.equals(cancelled.getFullName()) ? null : job, null));
     }
 
-    CancelledCause(String newerBuild) {
-        this.newerBuild = newerBuild;
-        // No display name available, use what we have at this point
-        this.displayName = newerBuild;
+    /**
+     * Older records hold the externalizable id of the newer build, and its display name even when it is the default one.
+     * The job of the cancelled build is not known here, so the job of the newer build is kept.
+     */
+    @Serial
+    private Object readResolve() {
+        if (newerBuild != null) {
+            int hash = newerBuild.lastIndexOf('#');
+            return INTERNER.intern(new CancelledCause(Integer.parseInt(newerBuild.substring(hash + 1)), newerBuild.substring(0, hash), displayName));
+        }
+        return INTERNER.intern(this);
     }
 
+    /**
+     * Looks up the newer build. Within the job of the cancelled build, only possible while serving a page or the API of the cancelled build.
+     */
     @Exported
     @Nullable
     public Run<?,?> getNewerBuild() {
-        return newerBuild != null ? Run.fromExternalizableId(newerBuild) : null;
+        if (job != null) {
+            return Run.fromExternalizableId(job + "#" + number);
+        }
+        StaplerRequest2 request = Stapler.getCurrentRequest2();
+        Run<?, ?> cancelled = request == null ? null : request.findAncestorObject(Run.class);
+        return cancelled == null ? null : getNewerBuild(cancelled);
+    }
+
+    /**
+     * @param cancelled the cancelled build
+     * @return the newer build, if it still exists
+     */
+    @CheckForNull
+    public Run<?, ?> getNewerBuild(@NonNull Run<?, ?> cancelled) {
+        return job != null ? Run.fromExternalizableId(job + "#" + number) : cancelled.getParent().getBuildByNumber(number);
     }
 
     @Override public String getShortDescription() {
-        return "Superseded by " + displayName;
+        return "Superseded by " + (displayName != null ? displayName : job != null ? job + "#" + number : "#" + number);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof CancelledCause other && number == other.number && Objects.equals(job, other.job) && Objects.equals(displayName, other.displayName);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(number, job, displayName);
     }
 
 }
@@ -0,0 +1,123 @@
+package org.jenkinsci.plugins.pipeline.milestone;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import hudson.model.Job;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import jenkins.util.SystemProperties;
+import jenkins.util.Timer;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Coalesces the cancellations caused by builds completing after a milestone.
+ * <p>
+ * When many builds of a job complete together, typically after a wave of cancellations, evaluating each completion on its own
+ * scans the milestones of the job and interrupts the same builds again and again.
+ * Completions are rather collected per job for {@link #WINDOW_MILLIS}, then evaluated newest first against the latest milestones,
+ * interrupting each build at most once.
+ * <p>
+ * Disabled by default, as deferring cancellations changes when, and against which milestones, superseded builds get cancelled.
+ */
+@Restricted(NoExternalUse.class)
+public final class CompletionBatcher {
+    private static final Logger LOGGER = Logger.getLogger(CompletionBatcher.class.getName());
+
+    /**
+     * How long to collect completions of a job before cancelling builds, {@code 0} to cancel right away.
+     */
+    @SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "for script console")
+    public static /* non-final for script console */ long WINDOW_MILLIS = SystemProperties.getLong(CompletionBatcher.class.getName() + ".windowMillis", 0L);
+
+    private static final Map<Job<?, ?>, Batch> BATCHES = new ConcurrentHashMap<>();
+
+    private CompletionBatcher() {}
+
+    /**
+     * Schedules the cancellations caused by a build completing.
+     * @param job the job of the completed build
+     * @param buildNumber the number of the completed build
+     * @param ordinal the milestone older builds must have passed not to get cancelled
+     * @param milestones the milestones of the job once the build got cleared
+     * @param cancellation called with each build to cancel and the build it is cancelled for
+     */
+    static void onCompleted(@NonNull Job<?, ?> job, int buildNumber, int ordinal, @NonNull Map<Integer, Integer> milestones,
+                            @NonNull MilestoneCancellationPolicy.Cancellation cancellation) {
+        long window = WINDOW_MILLIS;
+        if (window <= 0) {
+            evaluate(job, List.of(new Completion(buildNumber, ordinal)), milestones, cancellation);
+            return;
+        }
+        BATCHES.compute(job, (j, batch) -> {
+            if (batch == null) {
+                batch = new Batch(cancellation);
+                Timer.get().schedule(() -> {
+                    // otherwise flushed once resumed builds are loaded
+                    if (!ResumedMilestones.isPending(j)) {
+                        flush(j, null);
+                    }
+                }, window, TimeUnit.MILLISECONDS);
+            }
+            batch.completions.add(new Completion(buildNumber, ordinal));
+            batch.milestones = milestones;
+            return batch;
+        });
+    }
+
+    /**
+     * Evaluates the pending completions of a job right away.
+     * Called before a build of the job passes a milestone, so that it does not pass it while superseded by a completed build.
+     * @param job the job
+     * @param milestones the current milestones of the job, or {@code null} to use the latest ones known when its builds completed.
+     */
+    static void flush(@NonNull Job<?, ?> job, @CheckForNull Map<Integer, Integer> milestones) {
+        if (BATCHES.isEmpty()) {
+            return;
+        }
+        Batch batch = BATCHES.remove(job);
+        if (batch != null) {
+            LOGGER.fine(() -> "Evaluating " + batch.completions.size() + " completed builds of " + job.getFullName());
+            evaluate(job, batch.completions, milestones != null ? milestones : batch.milestones, batch.cancellation);
+        }
+    }
+
+    private static void evaluate(Job<?, ?> job, List<Completion> completions, Map<Integer, Integer> milestones,
+                                 MilestoneCancellationPolicy.Cancellation cancellation) {
+        var policy = MilestoneCancellationPolicy.forJob(job);
+        var remaining = new TreeMap<>(milestones);
+        Map<Integer, Integer> toCancel = new LinkedHashMap<>();
+        List<Completion> newestFirst = new ArrayList<>(completions);
+        newestFirst.sort(Comparator.comparingInt(Completion::buildNumber).reversed());
+        for (Completion completion : newestFirst) {
+            if (remaining.isEmpty()) {
+                break;
+            }
+            Map<Integer, Integer> selected = new LinkedHashMap<>();
+            policy.selectBuildsToCancel(completion.buildNumber(), completion.ordinal(), remaining, selected::putIfAbsent);
+            selected.forEach(toCancel::putIfAbsent);
+            remaining.keySet().removeAll(selected.keySet());
+        }
+        toCancel.forEach(cancellation::cancel);
+    }
+
+    private record Completion(int buildNumber, int ordinal) {}
+
+    private static final class Batch {
+        final List<Completion> completions = new ArrayList<>();
+        final MilestoneCancellationPolicy.Cancellation cancellation;
+        Map<Integer, Integer> milestones;
+
+        Batch(MilestoneCancellationPolicy.Cancellation cancellation) {
+            this.cancellation = cancellation;
+        }
+    }
+}
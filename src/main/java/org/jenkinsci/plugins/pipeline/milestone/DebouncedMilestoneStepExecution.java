@@ -0,0 +1,115 @@
+package org.jenkinsci.plugins.pipeline.milestone;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.model.Run;
+import java.io.IOException;
+import java.io.Serial;
+import java.util.Date;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.util.Timer;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+
+/**
+ * Execution of a {@link MilestoneStep} using {@link MilestoneStep#getDebounce()}.
+ * The build waits at the milestone, without holding any thread, until the debounce window elapses and then passes it,
+ * unless a newer build of the job reaches the milestone first, in which case {@link MilestoneStorage#debounce} cancels it.
+ * Like {@link MilestoneStepExecution}, the milestone is entered and passed outside the CPS VM thread, on the shared {@link Timer}.
+ */
+class DebouncedMilestoneStepExecution extends StepExecution {
+    private static final Logger LOGGER = Logger.getLogger(DebouncedMilestoneStepExecution.class.getName());
+
+    private final MilestoneStepExecution milestone;
+    private final long debounceMillis;
+    private Integer ordinal;
+    /**
+     * When the build may pass the milestone, kept across restarts so that the build only waits for the remaining time.
+     */
+    private long deadline;
+    private transient boolean done;
+
+    DebouncedMilestoneStepExecution(@NonNull StepContext context, @NonNull MilestoneStep step) {
+        super(context);
+        this.milestone = new MilestoneStepExecution(context, step);
+        this.debounceMillis = step.getDebounce() * 1000L;
+    }
+
+    @Override
+    public boolean start() throws Exception {
+        Timer.get().submit(this::enter);
+        return false;
+    }
+
+    private void enter() {
+        LOGGER.fine(() -> "Entering debounced milestone of " + getContext());
+        try {
+            ordinal = milestone.enter();
+            deadline = System.currentTimeMillis() + debounceMillis;
+            MilestoneStepExecution.println(getContext(), "Waiting " + debounceMillis / 1000 + "s for newer builds at milestone " + ordinal);
+            await();
+        } catch (Exception x) {
+            if (finish()) {
+                getContext().onFailure(x);
+            }
+        }
+    }
+
+    private void await() throws IOException, InterruptedException {
+        Run<?, ?> run = getContext().get(Run.class);
+        MilestoneStepExecution.getStorage().debounce(run, ordinal, Math.max(0, deadline - System.currentTimeMillis()), this::proceed);
+    }
+
+    private void proceed() {
+        if (!finish()) {
+            return;
+        }
+        try {
+            milestone.pass(ordinal);
+            getContext().onSuccess(null);
+        } catch (Exception x) {
+            getContext().onFailure(x);
+        }
+    }
+
+    /**
+     * @return {@code true} the first time it is called
+     */
+    private synchronized boolean finish() {
+        if (done) {
+            return false;
+        }
+        done = true;
+        return true;
+    }
+
+    @Override
+    public void stop(@NonNull Throwable cause) throws Exception {
+        if (finish()) {
+            getContext().onFailure(cause);
+        }
+    }
+
+    @Override
+    public void onResume() {
+        if (ordinal == null) {
+            // Jenkins stopped before the milestone got entered
+            Timer.get().submit(this::enter);
+            return;
+        }
+        try {
+            await();
+        } catch (Exception x) {
+            LOGGER.log(Level.WARNING, x, () -> "Unable to resume waiting at milestone " + ordinal);
+            getContext().onFailure(x);
+        }
+    }
+
+    @Override
+    public String getStatus() {
+        return "waiting for newer builds at milestone " + ordinal + " until " + new Date(deadline);
+    }
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+}
@@ -5,14 +5,29 @@ import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.Extension;
 import hudson.model.Job;
 import hudson.model.Run;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
 import java.util.TreeMap;
 import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import jenkins.util.Timer;
 import org.kohsuke.accmod.Restricted;
 import org.kohsuke.accmod.restrictions.NoExternalUse;
 
@@ -24,38 +39,380 @@ import org.kohsuke.accmod.restrictions.NoExternalUse;
 public class DefaultMilestoneStorage implements MilestoneStorage {
     private static final Logger LOGGER = Logger.getLogger(DefaultMilestoneStorage.class.getName());
 
-    private final Map<Job<?,?>, Map<Integer, Integer>> milestonesPerJob = Collections.synchronizedMap(new WeakHashMap<>());
+    private final Map<Job<?,?>, NavigableMap<Integer, Integer>> milestonesPerJob = Collections.synchronizedMap(new WeakHashMap<>());
+
+    /**
+     * Number of running builds at each milestone, maintained while holding the lock of {@link #milestonesPerJob}
+     * so that it always matches its content, but readable without locking.
+     * Entries are removed with the last build of the job.
+     */
+    private final Map<Job<?,?>, Map<Integer, AtomicInteger>> buildsAtOrdinalPerJob = new ConcurrentHashMap<>();
+
+    /**
+     * Newest build which passed a milestone of each job, packed with the highest milestone it passed by {@link #pack},
+     * so that a single {@link AtomicLong#accumulateAndGet} keeps it up to date.
+     * Entries are removed with the last build of the job, as builds starting afterwards are newer than any build it recorded.
+     */
+    private final Map<Job<?,?>, AtomicLong> watermarks = new ConcurrentHashMap<>();
+
+    /**
+     * Milestone of each running build, {@link #NO_ORDINAL} if it passed none, updated one build at a time
+     * while holding the lock of {@link #milestonesPerJob} for queries to read without locking.
+     * Entries are removed with the last build of the job.
+     */
+    private final Map<Job<?,?>, Map<Integer, Integer>> ordinalsPerJob = new ConcurrentHashMap<>();
+
+    /**
+     * Newest running build which passed a milestone of each job, packed with that milestone by {@link #pack},
+     * maintained while holding the lock of {@link #milestonesPerJob} for queries to read without locking.
+     */
+    private final Map<Job<?,?>, Long> newestPassed = new ConcurrentHashMap<>();
+
+    private static final int NO_ORDINAL = Integer.MIN_VALUE;
+
+    /**
+     * Runs waiting at a debounced milestone, keyed by ordinal.
+     * Inner maps are only accessed within {@link ConcurrentHashMap#compute} of their job, and removed once empty.
+     */
+    private final Map<Job<?,?>, Map<Integer, Waiter>> waitersPerJob = new ConcurrentHashMap<>();
+
+    /**
+     * Latencies of the first {@link #MAX_LATENCY_ORDINALS} milestones of each job, kept while the job is loaded.
+     */
+    private final Map<Job<?,?>, Map<Integer, MilestoneLatency>> latenciesPerJob = Collections.synchronizedMap(new WeakHashMap<>());
+
+    /**
+     * Bounds the latencies kept per job, as each milestone takes a histogram of a few kilobytes.
+     */
+    static final int MAX_LATENCY_ORDINALS = 32;
 
     @Override
     public Map<Integer, Integer> store(@NonNull Run<?, ?> run, @CheckForNull Integer ordinal) {
-        return Collections.unmodifiableMap(milestonesPerJob.compute(run.getParent(), (job, milestones) -> {
+        var milestones = store(run.getParent(), run.getNumber(), ordinal);
+        if (ordinal != null) {
+            raiseWatermark(run.getParent(), run.getNumber(), ordinal);
+            supersedeWaiters(run, ordinal);
+        }
+        return milestones;
+    }
+
+    void raiseWatermark(@NonNull Job<?, ?> job, int number, int ordinal) {
+        long packed = pack(number, ordinal);
+        var watermark = watermarks.get(job);
+        if (watermark == null) {
+            watermark = watermarks.computeIfAbsent(job, j -> new AtomicLong());
+        }
+        watermark.accumulateAndGet(packed, Math::max);
+    }
+
+    @Override
+    public int overtakenBy(@NonNull Job<?, ?> job, int buildNumber, int ordinal) {
+        var watermark = watermarks.get(job);
+        if (watermark == null) {
+            return 0;
+        }
+        long packed = watermark.get();
+        int newest = (int) (packed >>> 32);
+        return newest > buildNumber && unpackOrdinal(packed) >= ordinal ? newest : 0;
+    }
+
+    /**
+     * Packs a build number with an ordinal so that packed values compare like the build numbers, then like the ordinals.
+     * The sign bit of the ordinal is flipped, so that negative ordinals neither spill into the build number nor compare higher than positive ones.
+     */
+    static long pack(int number, int ordinal) {
+        return (long) number << 32 | ((ordinal ^ Integer.MIN_VALUE) & 0xFFFFFFFFL);
+    }
+
+    static int unpackOrdinal(long packed) {
+        return (int) packed ^ Integer.MIN_VALUE;
+    }
+
+    /**
+     * @return a snapshot of the milestones of the job, taken while holding the lock.
+     * Returning the live map would let callers iterate over it while other builds of the job update it.
+     */
+    NavigableMap<Integer, Integer> store(@NonNull Job<?, ?> job, int number, @CheckForNull Integer ordinal) {
+        var snapshot = new AtomicReference<NavigableMap<Integer, Integer>>();
+        milestonesPerJob.compute(job, (j, milestones) -> {
             if (milestones == null) {
                 milestones = new TreeMap<>();
             }
-            milestones.put(run.getNumber(), ordinal);
+            put(j, milestones, number, ordinal);
+            snapshot.set(snapshot(milestones));
             return milestones;
-        }));
+        });
+        return snapshot.get();
+    }
+
+    @Override
+    public NavigableMap<Integer, Integer> bulkLoad(@NonNull Job<?, ?> job, @NonNull Map<Integer, Integer> milestones) {
+        var snapshot = new AtomicReference<NavigableMap<Integer, Integer>>(Collections.emptyNavigableMap());
+        milestonesPerJob.compute(job, (j, current) -> {
+            if (current == null) {
+                current = new TreeMap<>();
+            }
+            for (Map.Entry<Integer, Integer> entry : milestones.entrySet()) {
+                put(j, current, entry.getKey(), entry.getValue());
+                if (entry.getValue() != null) {
+                    raiseWatermark(j, entry.getKey(), entry.getValue());
+                }
+            }
+            if (current.isEmpty()) {
+                return null;
+            }
+            snapshot.set(snapshot(current));
+            return current;
+        });
+        return snapshot.get();
+    }
+
+    /**
+     * Records a milestone while holding the lock, keeping the highest one of the build.
+     */
+    private void put(Job<?, ?> job, NavigableMap<Integer, Integer> milestones, int number, @CheckForNull Integer ordinal) {
+        Integer previous = milestones.get(number);
+        if (previous == null || (ordinal != null && ordinal > previous)) {
+            milestones.put(number, ordinal);
+            ordinalsPerJob.computeIfAbsent(job, k -> new ConcurrentHashMap<>()).put(number, ordinal == null ? NO_ORDINAL : ordinal);
+            if (ordinal != null) {
+                newestPassed.merge(job, pack(number, ordinal), Math::max);
+                var counts = buildsAtOrdinalPerJob.computeIfAbsent(job, k -> new ConcurrentHashMap<>());
+                if (previous != null) {
+                    counts.get(previous).decrementAndGet();
+                }
+                counts.computeIfAbsent(ordinal, k -> new AtomicInteger()).incrementAndGet();
+            }
+        }
     }
 
     @Override
     @NonNull
     public ClearResult clear(@NonNull Run<?, ?> run) {
+        removeWaiters(run.getParent(), w -> w.number == run.getNumber());
+        return clear(run.getParent(), run.getNumber());
+    }
+
+    @NonNull
+    ClearResult clear(@NonNull Job<?, ?> job, int number) {
         var previousMilestone = new AtomicReference<Integer>();
-        var newMilestones = milestonesPerJob.compute(run.getParent(), (job, milestones) -> {
-            if (milestones != null) {
-                previousMilestone.set(milestones.remove(run.getNumber()));
-                if (milestones.isEmpty()) {
-                    return null;
+        var snapshot = new AtomicReference<NavigableMap<Integer, Integer>>(Collections.emptyNavigableMap());
+        milestonesPerJob.computeIfPresent(job, (j, milestones) -> {
+            Integer previous = milestones.remove(number);
+            previousMilestone.set(previous);
+            if (milestones.isEmpty()) {
+                buildsAtOrdinalPerJob.remove(j);
+                ordinalsPerJob.remove(j);
+                newestPassed.remove(j);
+                watermarks.remove(j);
+                return null;
+            }
+            ordinalsPerJob.get(j).remove(number);
+            if (previous != null) {
+                buildsAtOrdinalPerJob.get(j).get(previous).decrementAndGet();
+                if ((int) (newestPassed.get(j) >>> 32) == number) {
+                    updateNewestPassed(j, milestones);
                 }
             }
+            snapshot.set(snapshot(milestones));
             return milestones;
         });
-        return new ClearResult(previousMilestone.get(), Collections.unmodifiableMap(newMilestones == null ? new HashMap<>() : newMilestones));
+        return new ClearResult(previousMilestone.get(), snapshot.get());
+    }
+
+    /**
+     * Looks for the newest build which passed a milestone, once the previous one completed, while holding the lock.
+     * Usually stops at the newest builds.
+     */
+    private void updateNewestPassed(Job<?, ?> job, NavigableMap<Integer, Integer> milestones) {
+        for (Map.Entry<Integer, Integer> entry : milestones.descendingMap().entrySet()) {
+            if (entry.getValue() != null) {
+                newestPassed.put(job, pack(entry.getKey(), entry.getValue()));
+                return;
+            }
+        }
+        newestPassed.remove(job);
+    }
+
+    private static NavigableMap<Integer, Integer> snapshot(NavigableMap<Integer, Integer> milestones) {
+        return Collections.unmodifiableNavigableMap(new TreeMap<>(milestones));
+    }
+
+    @Override
+    @CheckForNull
+    public Integer newestPassedOrdinal(@NonNull Job<?, ?> job) {
+        Long packed = newestPassed.get(job);
+        return packed == null ? null : unpackOrdinal(packed);
+    }
+
+    @Override
+    public boolean isSuperseded(@NonNull Run<?, ?> run) {
+        var ordinals = ordinalsPerJob.get(run.getParent());
+        Integer ordinal = ordinals == null ? null : ordinals.get(run.getNumber());
+        if (ordinal == null) {
+            return false;
+        }
+        return overtakenBy(run.getParent(), run.getNumber(), ordinal == NO_ORDINAL ? 0 : ordinal + 1) != 0;
+    }
+
+    @Override
+    public int countBuildsAt(@NonNull Job<?, ?> job, int ordinal) {
+        var counts = buildsAtOrdinalPerJob.get(job);
+        if (counts == null) {
+            return 0;
+        }
+        var count = counts.get(ordinal);
+        return count == null ? 0 : count.get();
+    }
+
+    @NonNull
+    @Override
+    public Collection<Job<?, ?>> getTrackedJobs() {
+        synchronized (milestonesPerJob) {
+            return new ArrayList<>(milestonesPerJob.keySet());
+        }
+    }
+
+    /**
+     * @return a snapshot of the build numbers recorded for the job.
+     */
+    @NonNull
+    Set<Integer> trackedBuilds(@NonNull Job<?, ?> job) {
+        synchronized (milestonesPerJob) {
+            var milestones = milestonesPerJob.get(job);
+            return milestones == null ? Set.of() : new HashSet<>(milestones.keySet());
+        }
+    }
+
+    @Override
+    public int reclaim(@NonNull Job<?, ?> job, @NonNull IntPredicate stale) {
+        int reclaimed = 0;
+        for (int number : trackedBuilds(job)) {
+            if (stale.test(number)) {
+                removeWaiters(job, w -> w.number == number);
+                clear(job, number);
+                reclaimed++;
+            }
+        }
+        return reclaimed;
+    }
+
+    @Override
+    public void debounce(@NonNull Run<?, ?> run, int ordinal, long delayMillis, @NonNull Runnable proceed) {
+        Job<?, ?> job = run.getParent();
+        var waiter = new Waiter(run.getNumber(), ordinal, proceed);
+        var superseded = new AtomicReference<Waiter>();
+        var newer = new AtomicReference<Waiter>(waiter);
+        waitersPerJob.compute(job, (j, waiters) -> {
+            if (waiters == null) {
+                waiters = new HashMap<>();
+            }
+            Waiter current = waiters.get(ordinal);
+            if (current != null && current.number > waiter.number) {
+                superseded.set(waiter);
+                newer.set(current);
+            } else {
+                superseded.set(current);
+                waiters.put(ordinal, waiter);
+            }
+            return waiters;
+        });
+        if (superseded.get() != null) {
+            supersede(job, superseded.get(), newer.get().number);
+        }
+        if (superseded.get() != waiter) {
+            waiter.timer = Timer.get().schedule(() -> {
+                if (waiter.done.compareAndSet(false, true)) {
+                    removeWaiters(job, w -> w == waiter);
+                    proceed.run();
+                }
+            }, delayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Cancels older runs waiting at a milestone that a run reached or passed.
+     */
+    private void supersedeWaiters(@NonNull Run<?, ?> run, int ordinal) {
+        if (waitersPerJob.isEmpty()) {
+            return;
+        }
+        for (Waiter waiter : removeWaiters(run.getParent(), w -> w.number < run.getNumber() && w.ordinal <= ordinal)) {
+            supersede(run.getParent(), waiter, run.getNumber());
+        }
+    }
+
+    private void supersede(@NonNull Job<?, ?> job, @NonNull Waiter waiter, int newerBuildNumber) {
+        if (waiter.done.compareAndSet(false, true)) {
+            waiter.cancelTimer();
+            LOGGER.fine(() -> job.getFullName() + "#" + waiter.number + " waiting at milestone " + waiter.ordinal + " superseded by #" + newerBuildNumber);
+            Run<?, ?> newer = job.getBuildByNumber(newerBuildNumber);
+            MilestoneStepExecution.cancel(job, waiter.number, newer == null ? job.getFullName() + "#" + newerBuildNumber : newer.getExternalizableId());
+        }
+    }
+
+    private List<Waiter> removeWaiters(@NonNull Job<?, ?> job, @NonNull Predicate<Waiter> filter) {
+        List<Waiter> removed = new ArrayList<>();
+        waitersPerJob.computeIfPresent(job, (j, waiters) -> {
+            waiters.values().removeIf(w -> filter.test(w) && removed.add(w));
+            return waiters.isEmpty() ? null : waiters;
+        });
+        removed.forEach(Waiter::cancelTimer);
+        return removed;
+    }
+
+    private static final class Waiter {
+        final int number;
+        final int ordinal;
+        final Runnable proceed;
+        final AtomicBoolean done = new AtomicBoolean();
+        volatile ScheduledFuture<?> timer;
+
+        Waiter(int number, int ordinal, Runnable proceed) {
+            this.number = number;
+            this.ordinal = ordinal;
+            this.proceed = proceed;
+        }
+
+        void cancelTimer() {
+            var timer = this.timer;
+            if (timer != null) {
+                timer.cancel(false);
+            }
+        }
+    }
+
+    @Override
+    public void recordLatency(@NonNull Run<?, ?> run, int ordinal, @CheckForNull String label, long millis) {
+        var latencies = latenciesPerJob.computeIfAbsent(run.getParent(), job -> new ConcurrentHashMap<>());
+        var latency = latencies.get(ordinal);
+        if (latency == null) {
+            if (latencies.size() >= MAX_LATENCY_ORDINALS) {
+                return;
+            }
+            latency = latencies.computeIfAbsent(ordinal, MilestoneLatency::new);
+        }
+        latency.record(label, millis);
+    }
+
+    @Override
+    @NonNull
+    public Map<Integer, MilestoneLatency> getLatencies(@NonNull Job<?, ?> job) {
+        var latencies = latenciesPerJob.get(job);
+        return latencies == null ? Map.of() : Collections.unmodifiableMap(latencies);
     }
 
     @Override
     public void onDeletedJob(@NonNull Job<?, ?> job) {
         LOGGER.log(Level.FINE, () -> "Clearing milestones for " + job.getFullName());
-        milestonesPerJob.remove(job);
+        synchronized (milestonesPerJob) {
+            milestonesPerJob.remove(job);
+            buildsAtOrdinalPerJob.remove(job);
+            ordinalsPerJob.remove(job);
+            newestPassed.remove(job);
+        }
+        watermarks.remove(job);
+        removeWaiters(job, w -> true);
+        latenciesPerJob.remove(job);
     }
 }
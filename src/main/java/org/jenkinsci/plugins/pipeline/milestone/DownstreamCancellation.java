@@ -0,0 +1,152 @@
+package org.jenkinsci.plugins.pipeline.milestone;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import hudson.Extension;
+import hudson.model.Cause;
+import hudson.model.Executor;
+import hudson.model.Result;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.model.listeners.RunListener;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.logging.Logger;
+import jenkins.util.SystemProperties;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Optionally cancels the running downstream builds of builds cancelled at a milestone,
+ * such as those triggered by the {@code build} step, as their results will not be used either.
+ * <p>
+ * Running builds are indexed by the upstream builds of their {@link Cause.UpstreamCause} when they start,
+ * so finding the downstream builds of a cancelled build only looks up those builds.
+ * Builds are kept by externalizable id, so that the index does not hold on to builds whose completion was missed,
+ * and {@link MilestoneReconciler} {@link #prune prunes} those.
+ * Cancellation follows downstream builds of downstream builds too.
+ * Builds still waiting in the queue are left alone.
+ */
+@Restricted(NoExternalUse.class)
+public final class DownstreamCancellation {
+    private static final Logger LOGGER = Logger.getLogger(DownstreamCancellation.class.getName());
+
+    @SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "for script console")
+    public static /* non-final for script console */ boolean ENABLED = SystemProperties.getBoolean(DownstreamCancellation.class.getName() + ".enabled");
+
+    /**
+     * Externalizable ids of running builds by the externalizable id of their upstream builds.
+     */
+    private static final Map<String, Set<String>> DOWNSTREAM = new ConcurrentHashMap<>();
+
+    private DownstreamCancellation() {}
+
+    /**
+     * Called once a build got interrupted for being superseded.
+     * @param externalizableId the externalizable id of the build causing the cancellation
+     */
+    static void onInterrupted(@NonNull Run<?, ?> run, @NonNull String externalizableId) {
+        if (!ENABLED || DOWNSTREAM.isEmpty()) {
+            return;
+        }
+        Set<String> seen = new HashSet<>();
+        Deque<Run<?, ?>> upstream = new ArrayDeque<>();
+        upstream.add(run);
+        try (ACLContext ignored = ACL.as2(ACL.SYSTEM2)) {
+            while (!upstream.isEmpty()) {
+                Run<?, ?> current = upstream.poll();
+                for (String id : DOWNSTREAM.getOrDefault(current.getExternalizableId(), Set.of())) {
+                    if (!seen.add(id)) {
+                        continue;
+                    }
+                    Run<?, ?> downstream = Run.fromExternalizableId(id);
+                    if (downstream != null && downstream.isBuilding()) {
+                        interrupt(downstream, current, externalizableId);
+                        upstream.add(downstream);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Forgets builds whose completion was missed, as when deleted while running.
+     * @param running tells whether the build with the given externalizable id is known to be running,
+     * the others being looked up
+     * @return the number of builds forgotten
+     */
+    static int prune(@NonNull Predicate<String> running) {
+        int pruned = 0;
+        try (ACLContext ignored = ACL.as2(ACL.SYSTEM2)) {
+            for (Map.Entry<String, Set<String>> entry : DOWNSTREAM.entrySet()) {
+                for (String id : entry.getValue()) {
+                    if (!running.test(id)) {
+                        Run<?, ?> run = Run.fromExternalizableId(id);
+                        if ((run == null || !run.isBuilding()) && entry.getValue().remove(id)) {
+                            pruned++;
+                        }
+                    }
+                }
+                DOWNSTREAM.computeIfPresent(entry.getKey(), (upstream, downstream) -> downstream.isEmpty() ? null : downstream);
+            }
+        }
+        return pruned;
+    }
+
+    static boolean isEmpty() {
+        return DOWNSTREAM.isEmpty();
+    }
+
+    private static void interrupt(Run<?, ?> downstream, Run<?, ?> upstream, String externalizableId) {
+        Executor e = downstream.getExecutor();
+        if (e == null) {
+            LOGGER.fine(() -> "could not cancel " + downstream + " downstream of " + upstream + " because it has no assigned executor");
+            return;
+        }
+        LOGGER.fine(() -> "Cancelling " + downstream + " downstream of " + upstream);
+        e.interrupt(Result.NOT_BUILT, CancelledCause.of(downstream.getParent(), externalizableId));
+        CancellationEscalator.onInterrupted(downstream);
+    }
+
+    private static String upstreamId(Cause.UpstreamCause cause) {
+        return cause.getUpstreamProject() + "#" + cause.getUpstreamBuild();
+    }
+
+    @Extension
+    @Restricted(NoExternalUse.class)
+    public static final class Listener extends RunListener<Run<?, ?>> {
+        @Override
+        public void onStarted(Run<?, ?> r, TaskListener listener) {
+            if (!ENABLED) {
+                return;
+            }
+            for (Cause cause : r.getCauses()) {
+                if (cause instanceof Cause.UpstreamCause upstream) {
+                    DOWNSTREAM.computeIfAbsent(upstreamId(upstream), id -> ConcurrentHashMap.newKeySet()).add(r.getExternalizableId());
+                }
+            }
+        }
+
+        @Override
+        public void onCompleted(Run<?, ?> r, @NonNull TaskListener listener) {
+            if (DOWNSTREAM.isEmpty()) {
+                return;
+            }
+            for (Cause cause : r.getCauses()) {
+                if (cause instanceof Cause.UpstreamCause upstream) {
+                    DOWNSTREAM.computeIfPresent(upstreamId(upstream), (id, downstream) -> {
+                        downstream.remove(r.getExternalizableId());
+                        return downstream.isEmpty() ? null : downstream;
+                    });
+                }
+            }
+        }
+    }
+}
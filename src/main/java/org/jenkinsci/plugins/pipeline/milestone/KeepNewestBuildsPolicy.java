@@ -0,0 +1,53 @@
+package org.jenkinsci.plugins.pipeline.milestone;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.model.Descriptor;
+import java.util.Map;
+import java.util.NavigableMap;
+import org.jenkinsci.Symbol;
+import org.kohsuke.stapler.DataBoundConstructor;
+
+/**
+ * Lets the given number of newest builds run past a milestone together, only older ones get cancelled.
+ */
+public class KeepNewestBuildsPolicy extends MilestoneCancellationPolicy {
+
+    private final int count;
+
+    /**
+     * @param count how many of the newest builds are kept, including the one passing the milestone.
+     */
+    @DataBoundConstructor
+    public KeepNewestBuildsPolicy(int count) {
+        this.count = Math.max(1, count);
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    @Override
+    public void selectBuildsToCancel(int buildNumber, @CheckForNull Integer ordinal, @NonNull NavigableMap<Integer, Integer> milestones, @NonNull Cancellation cancellation) {
+        int kept = 1;
+        for (Map.Entry<Integer, Integer> older : milestones.headMap(buildNumber, false).descendingMap().entrySet()) {
+            if (kept < count) {
+                kept++;
+            } else if (isBehind(older.getValue(), ordinal)) {
+                cancellation.cancel(older.getKey(), buildNumber);
+            }
+        }
+        cancelIfOvertaken(buildNumber, ordinal, milestones, cancellation);
+    }
+
+    @Extension
+    @Symbol("keepNewestBuilds")
+    public static final class DescriptorImpl extends Descriptor<MilestoneCancellationPolicy> {
+        @NonNull
+        @Override
+        public String getDisplayName() {
+            return "Keep the newest builds";
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package org.jenkinsci.plugins.pipeline.milestone;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size histogram with log-linear buckets, in the spirit of HdrHistogram.
+ * Values below {@link #SUB_BUCKETS} are counted exactly, larger ones within about 3% of their value.
+ * Recording never allocates nor locks, so it can be called on every milestone pass.
+ */
+final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    /**
+     * Highest bit of the largest value in milliseconds tracked precisely, about 50 days.
+     */
+    private static final int MILLIS_MAX_EXPONENT = 32;
+    /**
+     * Highest bit of the largest value in nanoseconds tracked precisely, about 20 hours.
+     */
+    private static final int NANOS_MAX_EXPONENT = 46;
+
+    /**
+     * Highest bit of the largest value tracked precisely, larger values are counted in the last bucket.
+     */
+    private final int maxExponent;
+    private final AtomicLongArray counts;
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Creates a histogram for values in milliseconds.
+     */
+    LatencyHistogram() {
+        this(MILLIS_MAX_EXPONENT);
+    }
+
+    private LatencyHistogram(int maxExponent) {
+        this.maxExponent = maxExponent;
+        this.counts = new AtomicLongArray((maxExponent - SUB_BUCKET_BITS + 2) * SUB_BUCKETS);
+    }
+
+    /**
+     * @return a histogram for values in nanoseconds or microseconds.
+     */
+    static LatencyHistogram forNanos() {
+        return new LatencyHistogram(NANOS_MAX_EXPONENT);
+    }
+
+    void record(long value) {
+        long v = Math.max(0, value);
+        counts.incrementAndGet(indexOf(v));
+        count.incrementAndGet();
+        max.accumulateAndGet(v, Math::max);
+    }
+
+    long getCount() {
+        return count.get();
+    }
+
+    long getMax() {
+        return max.get();
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the highest value equivalent to the given percentile, or 0 if nothing was recorded.
+     */
+    long getValueAtPercentile(double percentile) {
+        long total = count.get();
+        if (total == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(total * Math.min(100.0, percentile) / 100.0));
+        long cumulative = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            cumulative += counts.get(i);
+            if (cumulative >= target) {
+                return Math.min(highestEquivalentValue(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > maxExponent) {
+            return counts.length() - 1;
+        }
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long highestEquivalentValue(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = index % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return ((SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS)) + width - 1;
+    }
+}
@@ -0,0 +1,635 @@
+package org.jenkinsci.plugins.pipeline.milestone;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.ExtensionComponent;
+import hudson.ExtensionFilter;
+import hudson.model.Job;
+import hudson.model.Run;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
+import java.io.File;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Stores the milestones of running builds in a memory-mapped file under {@code JENKINS_HOME} rather than on the heap.
+ * <p>
+ * The file holds a fixed number of blocks, each with a header and a fixed number of 8-byte records (build number, ordinal).
+ * Records are placed by build number with linear probing, and deleted by shifting the following records back,
+ * so that looking up a build only reads the records from its slot to the next free one.
+ * The header holds the full name of the job, the watermark of the job and its newest build which passed a milestone,
+ * packed like {@link DefaultMilestoneStorage#pack}, so that queries read them without locking nor looking at the records.
+ * A job takes the first free block when one of its builds starts, and gives it back once none is running.
+ * Jobs which do not fit, because all blocks are taken, their name is too long or they run more builds than a block holds,
+ * are kept on the heap like {@link DefaultMilestoneStorage} does until their last running build completes.
+ * <p>
+ * As the operating system writes the pages back, the milestones outlive a crash of the controller.
+ * Records of builds which are no longer running are dropped when the file is opened again.
+ * <p>
+ * Only used when the {@code org.jenkinsci.plugins.pipeline.milestone.MappedMilestoneStorage.enabled} system property is set.
+ */
+@Extension
+@Restricted(NoExternalUse.class)
+public class MappedMilestoneStorage extends DefaultMilestoneStorage {
+    private static final Logger LOGGER = Logger.getLogger(MappedMilestoneStorage.class.getName());
+
+    static final boolean ENABLED = SystemProperties.getBoolean(MappedMilestoneStorage.class.getName() + ".enabled");
+
+    private static final int MAGIC = 0x4d4c5354;
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 16;
+    /**
+     * Offsets within the header of a block, 8-byte aligned as blocks are.
+     */
+    private static final int NAME_LENGTH = 0;
+    private static final int WATERMARK = 8;
+    private static final int NEWEST_PASSED = 16;
+    private static final int NAME = 24;
+    private static final int NAME_BYTES = 488;
+    private static final int BLOCK_HEADER_BYTES = NAME + NAME_BYTES;
+    private static final int RECORD_BYTES = 8;
+    private static final int NO_ORDINAL = -1;
+    private static final int LOCK_STRIPES = 64;
+    private static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle LONG = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    private final File file;
+    private final int jobs;
+    private final int buildsPerJob;
+    private final int blockBytes;
+    /**
+     * Operations on a job hold the lock of its stripe, picked from its full name.
+     * Full names cannot change while a job is building, so neither can the block of a job.
+     */
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    private final Map<String, Integer> blocksByJob = new ConcurrentHashMap<>();
+    /**
+     * Full names of the jobs kept on the heap.
+     */
+    private final Set<String> spilled = ConcurrentHashMap.newKeySet();
+    private final BitSet usedBlocks = new BitSet();
+    private volatile ByteBuffer buffer;
+
+    public MappedMilestoneStorage() {
+        this(new File(Jenkins.get().getRootDir(), MappedMilestoneStorage.class.getName() + ".dat"),
+                SystemProperties.getInteger(MappedMilestoneStorage.class.getName() + ".jobs", 4096),
+                SystemProperties.getInteger(MappedMilestoneStorage.class.getName() + ".buildsPerJob", 64));
+    }
+
+    MappedMilestoneStorage(@NonNull File file, int jobs, int buildsPerJob) {
+        this.file = file;
+        this.jobs = jobs;
+        this.buildsPerJob = buildsPerJob;
+        this.blockBytes = BLOCK_HEADER_BYTES + buildsPerJob * RECORD_BYTES;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    @Override
+    NavigableMap<Integer, Integer> store(@NonNull Job<?, ?> job, int number, @CheckForNull Integer ordinal) {
+        String name = job.getFullName();
+        synchronized (lockFor(name)) {
+            Integer block = putInBlock(job, name, number, ordinal);
+            return block != null ? read(block) : super.store(job, number, ordinal);
+        }
+    }
+
+    @Override
+    void raiseWatermark(@NonNull Job<?, ?> job, int number, int ordinal) {
+        String name = job.getFullName();
+        // the block cannot get released and taken by another job meanwhile
+        synchronized (lockFor(name)) {
+            Integer block = blocksByJob.get(name);
+            if (block == null) {
+                super.raiseWatermark(job, number, ordinal);
+                return;
+            }
+            ByteBuffer b = buffer();
+            int offset = blockOffset(block) + WATERMARK;
+            long packed = pack(number, ordinal);
+            if (packed > (long) LONG.getVolatile(b, offset)) {
+                LONG.setVolatile(b, offset, packed);
+            }
+        }
+    }
+
+    @Override
+    public int overtakenBy(@NonNull Job<?, ?> job, int buildNumber, int ordinal) {
+        String name = job.getFullName();
+        Integer block = blocksByJob.get(name);
+        if (block == null) {
+            return super.overtakenBy(job, buildNumber, ordinal);
+        }
+        long packed = (long) LONG.getVolatile(buffer(), blockOffset(block) + WATERMARK);
+        if (!block.equals(blocksByJob.get(name))) {
+            // released meanwhile
+            return 0;
+        }
+        int newest = (int) (packed >>> 32);
+        return newest > buildNumber && unpackOrdinal(packed) >= ordinal ? newest : 0;
+    }
+
+    @Override
+    @CheckForNull
+    public Integer newestPassedOrdinal(@NonNull Job<?, ?> job) {
+        String name = job.getFullName();
+        Integer block = blocksByJob.get(name);
+        if (block == null) {
+            return super.newestPassedOrdinal(job);
+        }
+        long packed = (long) LONG.getVolatile(buffer(), blockOffset(block) + NEWEST_PASSED);
+        if (packed == 0 || !block.equals(blocksByJob.get(name))) {
+            return null;
+        }
+        return unpackOrdinal(packed);
+    }
+
+    /**
+     * Looks up the record of the build without locking, so may miss a change happening meanwhile.
+     */
+    @Override
+    public boolean isSuperseded(@NonNull Run<?, ?> run) {
+        Job<?, ?> job = run.getParent();
+        Integer block = blocksByJob.get(job.getFullName());
+        if (block == null) {
+            return super.isSuperseded(run);
+        }
+        ByteBuffer b = buffer();
+        int slot = find(b, block, run.getNumber());
+        if (slot < 0) {
+            return false;
+        }
+        int record = recordOffset(block, slot);
+        int ordinal = (int) INT.getAcquire(b, record + 4);
+        if ((int) INT.getAcquire(b, record) != run.getNumber()) {
+            // moved meanwhile
+            return false;
+        }
+        return overtakenBy(job, run.getNumber(), ordinal == NO_ORDINAL ? 0 : ordinal + 1) != 0;
+    }
+
+    @Override
+    public NavigableMap<Integer, Integer> bulkLoad(@NonNull Job<?, ?> job, @NonNull Map<Integer, Integer> milestones) {
+        String name = job.getFullName();
+        synchronized (lockFor(name)) {
+            Map<Integer, Integer> onHeap = new HashMap<>();
+            milestones.forEach((number, ordinal) -> {
+                if (putInBlock(job, name, number, ordinal) == null) {
+                    onHeap.put(number, ordinal);
+                } else if (ordinal != null) {
+                    raiseWatermark(job, number, ordinal);
+                }
+            });
+            Integer block = blocksByJob.get(name);
+            return block != null ? read(block) : super.bulkLoad(job, onHeap);
+        }
+    }
+
+    /**
+     * @return the block now holding the milestone, or {@code null} if the job is kept on the heap.
+     */
+    @CheckForNull
+    private Integer putInBlock(Job<?, ?> job, String name, int number, @CheckForNull Integer ordinal) {
+        if (!spilled.contains(name)) {
+            Integer block = blocksByJob.get(name);
+            if (block == null) {
+                block = allocate(name);
+            }
+            if (block != null && put(block, number, ordinal)) {
+                return block;
+            }
+            spill(job, block);
+        }
+        return null;
+    }
+
+    @Override
+    @NonNull
+    ClearResult clear(@NonNull Job<?, ?> job, int number) {
+        String name = job.getFullName();
+        synchronized (lockFor(name)) {
+            Integer block = blocksByJob.get(name);
+            if (block != null) {
+                Integer previous = remove(block, number);
+                var milestones = read(block);
+                if (milestones.isEmpty()) {
+                    release(name, block);
+                }
+                return new ClearResult(previous, milestones);
+            }
+            if (spilled.contains(name)) {
+                var result = super.clear(job, number);
+                if (result.milestones().isEmpty()) {
+                    spilled.remove(name);
+                }
+                return result;
+            }
+            return new ClearResult(null, Collections.emptyNavigableMap());
+        }
+    }
+
+    @Override
+    public int countBuildsAt(@NonNull Job<?, ?> job, int ordinal) {
+        String name = job.getFullName();
+        synchronized (lockFor(name)) {
+            Integer block = blocksByJob.get(name);
+            if (block == null) {
+                return spilled.contains(name) ? super.countBuildsAt(job, ordinal) : 0;
+            }
+            ByteBuffer b = buffer();
+            int count = 0;
+            for (int i = 0; i < buildsPerJob; i++) {
+                int record = recordOffset(block, i);
+                if (b.getInt(record) != 0 && b.getInt(record + 4) == ordinal) {
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+
+    @NonNull
+    @Override
+    public Collection<Job<?, ?>> getTrackedJobs() {
+        Set<Job<?, ?>> tracked = new LinkedHashSet<>(super.getTrackedJobs());
+        try (ACLContext ignored = ACL.as2(ACL.SYSTEM2)) {
+            for (String name : blocksByJob.keySet()) {
+                Job<?, ?> job = Jenkins.get().getItemByFullName(name, Job.class);
+                if (job != null) {
+                    tracked.add(job);
+                }
+            }
+        }
+        return tracked;
+    }
+
+    @NonNull
+    @Override
+    Set<Integer> trackedBuilds(@NonNull Job<?, ?> job) {
+        String name = job.getFullName();
+        synchronized (lockFor(name)) {
+            Integer block = blocksByJob.get(name);
+            if (block != null) {
+                return new HashSet<>(read(block).keySet());
+            }
+        }
+        return super.trackedBuilds(job);
+    }
+
+    @Override
+    public void onDeletedJob(@NonNull Job<?, ?> job) {
+        String name = job.getFullName();
+        synchronized (lockFor(name)) {
+            Integer block = blocksByJob.get(name);
+            if (block != null) {
+                release(name, block);
+            }
+            spilled.remove(name);
+        }
+        super.onDeletedJob(job);
+    }
+
+    private Object lockFor(String name) {
+        return locks[Math.floorMod(name.hashCode(), LOCK_STRIPES)];
+    }
+
+    private int blockOffset(int block) {
+        return HEADER_BYTES + block * blockBytes;
+    }
+
+    private int recordOffset(int block, int record) {
+        return blockOffset(block) + BLOCK_HEADER_BYTES + record * RECORD_BYTES;
+    }
+
+    /**
+     * @return the slot where probing for the build starts.
+     */
+    private int home(int number) {
+        return Math.floorMod(number, buildsPerJob);
+    }
+
+    /**
+     * Looks up the record of a build, reading the build numbers with acquire semantics so that it may be called without locking.
+     * @return the slot of the build, or {@code -1} if not recorded.
+     */
+    private int find(ByteBuffer b, int block, int number) {
+        for (int i = 0, slot = home(number); i < buildsPerJob; i++, slot = (slot + 1) % buildsPerJob) {
+            int recorded = (int) INT.getAcquire(b, recordOffset(block, slot));
+            if (recorded == number) {
+                return slot;
+            } else if (recorded == 0) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the block now holding the job, or {@code null} if it does not fit.
+     */
+    @CheckForNull
+    private Integer allocate(String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > NAME_BYTES) {
+            return null;
+        }
+        ByteBuffer b = buffer();
+        int block;
+        synchronized (usedBlocks) {
+            block = usedBlocks.nextClearBit(0);
+            if (block >= jobs) {
+                return null;
+            }
+            usedBlocks.set(block);
+        }
+        int offset = blockOffset(block);
+        b.put(offset + NAME, bytes);
+        LONG.setVolatile(b, offset + WATERMARK, 0L);
+        LONG.setVolatile(b, offset + NEWEST_PASSED, 0L);
+        b.putInt(offset + NAME_LENGTH, bytes.length);
+        blocksByJob.put(name, block);
+        return block;
+    }
+
+    private void release(String name, int block) {
+        ByteBuffer b = buffer();
+        b.putInt(blockOffset(block) + NAME_LENGTH, 0);
+        for (int i = 0; i < buildsPerJob; i++) {
+            b.putInt(recordOffset(block, i), 0);
+        }
+        blocksByJob.remove(name);
+        synchronized (usedBlocks) {
+            usedBlocks.clear(block);
+        }
+    }
+
+    /**
+     * Moves a job to the heap.
+     */
+    private void spill(Job<?, ?> job, @CheckForNull Integer block) {
+        String name = job.getFullName();
+        LOGGER.fine(() -> "Keeping milestones of " + name + " on the heap, it does not fit in " + file);
+        if (block != null) {
+            read(block).forEach((number, ordinal) -> super.store(job, number, ordinal));
+            long watermark = (long) LONG.getVolatile(buffer(), blockOffset(block) + WATERMARK);
+            if (watermark != 0) {
+                super.raiseWatermark(job, (int) (watermark >>> 32), unpackOrdinal(watermark));
+            }
+            release(name, block);
+        }
+        spilled.add(name);
+    }
+
+    /**
+     * Records a milestone, keeping the highest one of the build.
+     * @return {@code false} if the build is not recorded yet and the block is full.
+     */
+    private boolean put(int block, int number, @CheckForNull Integer ordinal) {
+        ByteBuffer b = buffer();
+        int value = ordinal == null ? NO_ORDINAL : ordinal;
+        for (int i = 0, slot = home(number); i < buildsPerJob; i++, slot = (slot + 1) % buildsPerJob) {
+            int record = recordOffset(block, slot);
+            int recorded = b.getInt(record);
+            if (recorded == number) {
+                if (value > b.getInt(record + 4)) {
+                    b.putInt(record + 4, value);
+                    updateNewestPassed(b, block);
+                }
+                return true;
+            } else if (recorded == 0) {
+                b.putInt(record + 4, value);
+                INT.setRelease(b, record, number);
+                if (ordinal != null) {
+                    updateNewestPassed(b, block);
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Updates the newest build which passed a milestone in the header of the block, while holding the lock of the job.
+     */
+    private void updateNewestPassed(ByteBuffer b, int block) {
+        int newest = 0;
+        int newestOrdinal = 0;
+        for (int i = 0; i < buildsPerJob; i++) {
+            int record = recordOffset(block, i);
+            int number = b.getInt(record);
+            int ordinal = b.getInt(record + 4);
+            if (number > newest && ordinal != NO_ORDINAL) {
+                newest = number;
+                newestOrdinal = ordinal;
+            }
+        }
+        LONG.setVolatile(b, blockOffset(block) + NEWEST_PASSED, newest == 0 ? 0L : pack(newest, newestOrdinal));
+    }
+
+    /**
+     * @return the previous milestone of the build, if any.
+     */
+    @CheckForNull
+    private Integer remove(int block, int number) {
+        ByteBuffer b = buffer();
+        int slot = find(b, block, number);
+        if (slot < 0) {
+            return null;
+        }
+        int ordinal = b.getInt(recordOffset(block, slot) + 4);
+        delete(b, block, slot);
+        if (ordinal != NO_ORDINAL) {
+            updateNewestPassed(b, block);
+            return ordinal;
+        }
+        return null;
+    }
+
+    /**
+     * Deletes a record, moving back the following records which could no longer be found otherwise.
+     * A moved record is written to its new slot before its old slot is reused or freed, and a slot is cleared
+     * before its ordinal changes, so that lookups without locking reading the build number again after the ordinal
+     * may miss a record being moved but never pair it with the ordinal of another build.
+     */
+    private void delete(ByteBuffer b, int block, int slot) {
+        int hole = slot;
+        for (int next = (slot + 1) % buildsPerJob; next != slot; next = (next + 1) % buildsPerJob) {
+            int record = recordOffset(block, next);
+            int number = b.getInt(record);
+            if (number == 0) {
+                break;
+            }
+            // the record can fill the hole if the hole lies between its home slot and its current slot
+            if (Math.floorMod(next - home(number), buildsPerJob) >= Math.floorMod(next - hole, buildsPerJob)) {
+                int target = recordOffset(block, hole);
+                INT.setRelease(b, target, 0);
+                INT.setRelease(b, target + 4, b.getInt(record + 4));
+                INT.setRelease(b, target, number);
+                hole = next;
+            }
+        }
+        INT.setRelease(b, recordOffset(block, hole), 0);
+    }
+
+    private NavigableMap<Integer, Integer> read(int block) {
+        ByteBuffer b = buffer();
+        NavigableMap<Integer, Integer> milestones = new TreeMap<>();
+        for (int i = 0; i < buildsPerJob; i++) {
+            int record = recordOffset(block, i);
+            int number = b.getInt(record);
+            if (number != 0) {
+                int ordinal = b.getInt(record + 4);
+                milestones.put(number, ordinal == NO_ORDINAL ? null : ordinal);
+            }
+        }
+        return Collections.unmodifiableNavigableMap(milestones);
+    }
+
+    private ByteBuffer buffer() {
+        ByteBuffer b = buffer;
+        if (b == null) {
+            synchronized (this) {
+                b = buffer;
+                if (b == null) {
+                    b = buffer = open();
+                }
+            }
+        }
+        return b;
+    }
+
+    /**
+     * Maps the file, dropping records of builds which are no longer running.
+     * Falls back to a heap buffer if the file cannot be mapped.
+     */
+    private ByteBuffer open() {
+        long size = HEADER_BYTES + (long) jobs * blockBytes;
+        ByteBuffer b;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            boolean compatible = channel.size() == size;
+            b = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            if (compatible && b.getInt(0) == MAGIC && b.getInt(4) == VERSION && b.getInt(8) == jobs && b.getInt(12) == buildsPerJob) {
+                load(b);
+                return b;
+            }
+            LOGGER.fine(() -> "Initializing " + file);
+            for (int block = 0; block < jobs; block++) {
+                b.putInt(HEADER_BYTES + block * blockBytes, 0);
+            }
+        } catch (IOException | RuntimeException x) {
+            LOGGER.log(Level.WARNING, x, () -> "Unable to map " + file + ", keeping milestones on the heap");
+            // direct, for atomic access to the headers of the blocks
+            b = ByteBuffer.allocateDirect((int) size);
+        }
+        b.putInt(0, MAGIC);
+        b.putInt(4, VERSION);
+        b.putInt(8, jobs);
+        b.putInt(12, buildsPerJob);
+        return b;
+    }
+
+    private void load(ByteBuffer b) {
+        int loaded = 0;
+        try (ACLContext ignored = ACL.as2(ACL.SYSTEM2)) {
+            for (int block = 0; block < jobs; block++) {
+                int offset = HEADER_BYTES + block * blockBytes;
+                int length = b.getInt(offset + NAME_LENGTH);
+                if (length == 0) {
+                    continue;
+                }
+                byte[] bytes = new byte[length];
+                b.get(offset + NAME, bytes);
+                String name = new String(bytes, StandardCharsets.UTF_8);
+                Job<?, ?> job = Jenkins.get().getItemByFullName(name, Job.class);
+                boolean used = false;
+                for (int i = 0; i < buildsPerJob; i++) {
+                    int record = offset + BLOCK_HEADER_BYTES + i * RECORD_BYTES;
+                    int number = b.getInt(record);
+                    if (number == 0) {
+                        continue;
+                    }
+                    Run<?, ?> run = job == null ? null : job.getBuildByNumber(number);
+                    if (run != null && run.isBuilding()) {
+                        used = true;
+                        loaded++;
+                    } else {
+                        b.putInt(record, 0);
+                    }
+                }
+                if (used) {
+                    rehash(b, block);
+                    updateNewestPassed(b, block);
+                    blocksByJob.put(name, block);
+                    usedBlocks.set(block);
+                } else {
+                    b.putInt(offset + NAME_LENGTH, 0);
+                }
+            }
+        }
+        int builds = loaded;
+        LOGGER.fine(() -> "Loaded milestones of " + builds + " running builds from " + file);
+    }
+
+    /**
+     * Places the records of a block again, as dropping the records of builds no longer running left gaps in their probe sequences.
+     */
+    private void rehash(ByteBuffer b, int block) {
+        Map<Integer, Integer> milestones = new HashMap<>();
+        for (int i = 0; i < buildsPerJob; i++) {
+            int record = recordOffset(block, i);
+            int number = b.getInt(record);
+            if (number != 0) {
+                milestones.put(number, b.getInt(record + 4));
+                b.putInt(record, 0);
+            }
+        }
+        milestones.forEach((number, ordinal) -> {
+            for (int i = 0, slot = home(number); i < buildsPerJob; i++, slot = (slot + 1) % buildsPerJob) {
+                int record = recordOffset(block, slot);
+                if (b.getInt(record) == 0) {
+                    b.putInt(record, number);
+                    b.putInt(record + 4, ordinal);
+                    break;
+                }
+            }
+        });
+    }
+
+    /**
+     * Hides this storage unless enabled.
+     */
+    @Extension
+    @Restricted(NoExternalUse.class)
+    public static final class Filter extends ExtensionFilter {
+        @Override
+        public <T> boolean allows(Class<T> type, ExtensionComponent<T> component) {
+            return ENABLED || !(component.getInstance() instanceof MappedMilestoneStorage);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package org.jenkinsci.plugins.pipeline.milestone;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.ExtensionPoint;
+import hudson.model.AbstractDescribableImpl;
+import hudson.model.Job;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Decides which builds get cancelled when a build passes a milestone or completes.
+ * Selected per job through {@link MilestoneJobProperty}, defaulting to {@link SupersedeOlderBuildsPolicy}.
+ */
+public abstract class MilestoneCancellationPolicy extends AbstractDescribableImpl<MilestoneCancellationPolicy> implements ExtensionPoint {
+
+    /**
+     * Receives the builds selected for cancellation.
+     */
+    @FunctionalInterface
+    public interface Cancellation {
+        /**
+         * @param buildNumber the build to cancel
+         * @param newerBuildNumber the build superseding it
+         */
+        void cancel(int buildNumber, int newerBuildNumber);
+    }
+
+    /**
+     * Selects builds to cancel. Called outside any storage lock, the milestones are a snapshot.
+     * @param buildNumber The build number currently querying for builds to cancel
+     * @param ordinal The ordinal the build just passed. {@code null} means it just started.
+     * @param milestones The current milestone of running builds, keyed by build number.
+     * @param cancellation Receives each build to cancel, possibly including {@code buildNumber} itself.
+     */
+    public abstract void selectBuildsToCancel(int buildNumber, @CheckForNull Integer ordinal, @NonNull NavigableMap<Integer, Integer> milestones, @NonNull Cancellation cancellation);
+
+    /**
+     * @return whether an older build at {@code olderOrdinal} is behind a build that just passed {@code ordinal}.
+     */
+    protected static boolean isBehind(@CheckForNull Integer olderOrdinal, @CheckForNull Integer ordinal) {
+        return olderOrdinal == null || (ordinal != null && olderOrdinal < ordinal);
+    }
+
+    /**
+     * Cancels the build itself if a newer one already passed the milestone it is trying to pass.
+     * This should never happen as the newer build would have cancelled it already, but ordering must be kept regardless.
+     */
+    protected static void cancelIfOvertaken(int buildNumber, @CheckForNull Integer ordinal, @NonNull NavigableMap<Integer, Integer> milestones, @NonNull Cancellation cancellation) {
+        for (Map.Entry<Integer, Integer> newer : milestones.tailMap(buildNumber, false).descendingMap().entrySet()) {
+            if (newer.getValue() != null && (ordinal == null || newer.getValue() >= ordinal)) {
+                cancellation.cancel(buildNumber, newer.getKey());
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return the policy configured for the job, or the default one.
+     */
+    @NonNull
+    public static MilestoneCancellationPolicy forJob(@NonNull Job<?, ?> job) {
+        MilestoneJobProperty property = job.getProperty(MilestoneJobProperty.class);
+        MilestoneCancellationPolicy policy = property != null ? property.getPolicy() : null;
+        return policy != null ? policy : SupersedeOlderBuildsPolicy.INSTANCE;
+    }
+
+    @NonNull
+    static NavigableMap<Integer, Integer> navigable(@NonNull Map<Integer, Integer> milestones) {
+        return milestones instanceof NavigableMap<Integer, Integer> navigable ? navigable : new TreeMap<>(milestones);
+    }
+}
@@ -0,0 +1,84 @@
+package org.jenkinsci.plugins.pipeline.milestone;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Java Flight Recorder events emitted by milestones.
+ * Callers only fill in fields once {@link Event#shouldCommit()}, so events cost next to nothing unless being recorded.
+ */
+final class MilestoneEvents {
+    private static final String PREFIX = "org.jenkinsci.plugins.pipeline.milestone.";
+
+    private MilestoneEvents() {}
+
+    @Name(PREFIX + "Pass")
+    @Label("Milestone Pass")
+    @Category({"Jenkins", "Pipeline Milestone"})
+    @Description("A build passing a milestone, including the cancellation of the builds it supersedes")
+    static final class Pass extends Event {
+        @Label("Job")
+        String job;
+
+        @Label("Build")
+        int build;
+
+        @Label("Ordinal")
+        int ordinal;
+    }
+
+    @Name(PREFIX + "OrdinalScan")
+    @Label("Milestone Ordinal Scan")
+    @Category({"Jenkins", "Pipeline Milestone"})
+    @Description("Scan of the flow graph of a build for its previous milestone")
+    static final class OrdinalScan extends Event {
+        @Label("Job")
+        String job;
+
+        @Label("Build")
+        int build;
+
+        @Label("Previous Ordinal")
+        @Description("Ordinal of the milestone found, -1 if none")
+        int ordinal = -1;
+
+        @Label("Scanned Nodes")
+        int nodes;
+    }
+
+    @Name(PREFIX + "CancelAll")
+    @Label("Milestone Cancellations")
+    @Category({"Jenkins", "Pipeline Milestone"})
+    @Description("Selection and cancellation of the builds superseded by a build passing a milestone or completing")
+    static final class CancelAll extends Event {
+        @Label("Job")
+        String job;
+
+        @Label("Build")
+        int build;
+
+        @Label("Ordinal")
+        int ordinal;
+
+        @Label("Cancelled Builds")
+        int victims;
+    }
+
+    @Name(PREFIX + "Cancel")
+    @Label("Milestone Cancel")
+    @Category({"Jenkins", "Pipeline Milestone"})
+    @Description("Interruption of a superseded build")
+    static final class Cancel extends Event {
+        @Label("Job")
+        String job;
+
+        @Label("Build")
+        int build;
+
+        @Label("Newer Build")
+        String newerBuild;
+    }
+}
@@ -0,0 +1,59 @@
+package org.jenkinsci.plugins.pipeline.milestone;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.model.Job;
+import hudson.model.JobProperty;
+import hudson.model.JobPropertyDescriptor;
+import org.jenkinsci.Symbol;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+
+/**
+ * Job level settings of the milestone step.
+ */
+public class MilestoneJobProperty extends JobProperty<Job<?, ?>> {
+
+    @CheckForNull
+    private MilestoneCancellationPolicy policy;
+
+    private boolean stageMilestones;
+
+    @DataBoundConstructor
+    public MilestoneJobProperty() {
+    }
+
+    @CheckForNull
+    public MilestoneCancellationPolicy getPolicy() {
+        return policy;
+    }
+
+    @DataBoundSetter
+    public void setPolicy(@CheckForNull MilestoneCancellationPolicy policy) {
+        this.policy = policy;
+    }
+
+    /**
+     * @return whether builds pass a milestone at the start of each stage, as if it began with a {@code milestone()} step.
+     * @see StageMilestones
+     */
+    public boolean isStageMilestones() {
+        return stageMilestones;
+    }
+
+    @DataBoundSetter
+    public void setStageMilestones(boolean stageMilestones) {
+        this.stageMilestones = stageMilestones;
+    }
+
+    @Extension
+    @Symbol("milestones")
+    public static final class DescriptorImpl extends JobPropertyDescriptor {
+        @NonNull
+        @Override
+        public String getDisplayName() {
+            return "Milestones";
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package org.jenkinsci.plugins.pipeline.milestone;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+/**
+ * Time builds of a job took to reach a milestone since they passed the previous one, or since they started for the first milestone.
+ */
+@ExportedBean(defaultVisibility = 2)
+public final class MilestoneLatency {
+    private final int ordinal;
+    private volatile String label;
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    MilestoneLatency(int ordinal) {
+        this.ordinal = ordinal;
+    }
+
+    void record(@CheckForNull String label, long millis) {
+        if (label != null) {
+            this.label = label;
+        }
+        histogram.record(millis);
+    }
+
+    @Exported
+    public int getOrdinal() {
+        return ordinal;
+    }
+
+    /**
+     * @return the label last used by a milestone with this ordinal, if any.
+     */
+    @Exported
+    @CheckForNull
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * @return the number of recorded passes.
+     */
+    @Exported
+    public long getCount() {
+        return histogram.getCount();
+    }
+
+    @Exported
+    public long getP50() {
+        return histogram.getValueAtPercentile(50);
+    }
+
+    @Exported
+    public long getP95() {
+        return histogram.getValueAtPercentile(95);
+    }
+
+    @Exported
+    public long getP99() {
+        return histogram.getValueAtPercentile(99);
+    }
+
+    @Exported
+    public long getMax() {
+        return histogram.getMax();
+    }
+}
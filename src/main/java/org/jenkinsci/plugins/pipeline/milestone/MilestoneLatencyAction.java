@@ -0,0 +1,66 @@
+package org.jenkinsci.plugins.pipeline.milestone;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.model.Action;
+import hudson.model.Job;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import jenkins.model.TransientActionFactory;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+/**
+ * Exposes {@link MilestoneStorage#getLatencies(Job)} through the REST API of a job, under {@code milestoneLatency/api}.
+ * Latencies are in milliseconds.
+ */
+@ExportedBean
+public final class MilestoneLatencyAction implements Action {
+    private final Job<?, ?> job;
+
+    MilestoneLatencyAction(Job<?, ?> job) {
+        this.job = job;
+    }
+
+    @Exported
+    public List<MilestoneLatency> getMilestones() {
+        return MilestoneStepExecution.getStorage().getLatencies(job).values().stream()
+                .sorted(Comparator.comparingInt(MilestoneLatency::getOrdinal))
+                .toList();
+    }
+
+    @Override
+    public String getIconFileName() {
+        return null;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "Milestone latency";
+    }
+
+    @Override
+    public String getUrlName() {
+        return "milestoneLatency";
+    }
+
+    @Extension
+    @SuppressWarnings("rawtypes")
+    public static final class Factory extends TransientActionFactory<Job> {
+        @Override
+        public Class<Job> type() {
+            return Job.class;
+        }
+
+        @NonNull
+        @Override
+        public Collection<? extends Action> createFor(@NonNull Job target) {
+            if (MilestoneStepExecution.getStorage().getLatencies(target).isEmpty()) {
+                return Set.of();
+            }
+            return Set.of(new MilestoneLatencyAction(target));
+        }
+    }
+}
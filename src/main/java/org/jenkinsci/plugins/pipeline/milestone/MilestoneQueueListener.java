@@ -0,0 +1,72 @@
+package org.jenkinsci.plugins.pipeline.milestone;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import hudson.Extension;
+import hudson.model.Job;
+import hudson.model.ParameterValue;
+import hudson.model.ParametersAction;
+import hudson.model.Queue;
+import hudson.model.queue.QueueListener;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Optionally collapses the queue of jobs using milestones.
+ * <p>
+ * Queued items only get a build number once they start, so whichever of them starts last becomes the newest build and supersedes
+ * the others at their first milestone. While a build of the job is running past a milestone, a new item entering the queue therefore
+ * drops the older items of the job still waiting in the queue, instead of letting each of them take an executor only to get cancelled.
+ * <p>
+ * With {@link #SAME_PARAMETERS}, only older items with the same parameters are dropped, for jobs building distinct things
+ * depending on their parameters. Those are the items the queue did not fold into the new one because of other actions,
+ * such as the distinct revisions of SCM triggers.
+ * <p>
+ * Runs once the new item is actually in the queue, so nothing is dropped if a {@link Queue.QueueDecisionHandler} vetoes it.
+ */
+@Extension
+@Restricted(NoExternalUse.class)
+public class MilestoneQueueListener extends QueueListener {
+    private static final Logger LOGGER = Logger.getLogger(MilestoneQueueListener.class.getName());
+
+    @SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "for script console")
+    public static /* non-final for script console */ boolean ENABLED = SystemProperties.getBoolean(MilestoneQueueListener.class.getName() + ".enabled");
+
+    @SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "for script console")
+    public static /* non-final for script console */ boolean SAME_PARAMETERS = SystemProperties.getBoolean(MilestoneQueueListener.class.getName() + ".sameParameters");
+
+    @Override
+    public void onEnterWaiting(Queue.WaitingItem wi) {
+        if (!ENABLED || !(wi.task instanceof Job<?, ?> job) || MilestoneStepExecution.getStorage().newestPassedOrdinal(job) == null) {
+            return;
+        }
+        Queue queue = Jenkins.get().getQueue();
+        Map<String, ParameterValue> parameters = SAME_PARAMETERS ? parameters(wi) : null;
+        for (Queue.Item item : queue.getItems(wi.task)) {
+            if (item.getId() >= wi.getId() || (parameters != null && !parameters.equals(parameters(item)))) {
+                continue;
+            }
+            if (item instanceof Queue.BuildableItem buildable && buildable.isPending()) {
+                // Already handed over to an executor
+                continue;
+            }
+            LOGGER.fine(() -> "Dropping " + item + " from the queue, superseded by " + wi + " of " + job.getFullName());
+            queue.cancel(item);
+        }
+    }
+
+    private static Map<String, ParameterValue> parameters(Queue.Item item) {
+        Map<String, ParameterValue> parameters = new HashMap<>();
+        var action = item.getAction(ParametersAction.class);
+        if (action != null) {
+            for (ParameterValue value : action.getParameters()) {
+                parameters.put(value.getName(), value);
+            }
+        }
+        return parameters;
+    }
+}
@@ -0,0 +1,115 @@
+package org.jenkinsci.plugins.pipeline.milestone;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import hudson.Extension;
+import hudson.ExtensionComponent;
+import hudson.ExtensionFilter;
+import hudson.model.Job;
+import hudson.model.Queue;
+import hudson.model.Run;
+import hudson.model.queue.QueueSorter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import jenkins.util.SystemProperties;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Optionally starts the newest queued items of jobs using milestones first.
+ * <p>
+ * Items of jobs with running builds past a milestone, such as the {@code node} blocks of their running builds,
+ * take the places in the queue of the items of the same job, newest build first.
+ * Items of builds which a newer build already overtook at a milestone will most likely get cancelled, so they go last.
+ * Items of other jobs keep their order.
+ * <p>
+ * Only used when the {@code org.jenkinsci.plugins.pipeline.milestone.MilestoneQueueSorter.enabled} system property is set.
+ * Jenkins only uses one {@link QueueSorter}, so this is ignored if another plugin contributes one first.
+ */
+@Extension
+@Restricted(NoExternalUse.class)
+public class MilestoneQueueSorter extends QueueSorter {
+    static final boolean ENABLED = SystemProperties.getBoolean(MilestoneQueueSorter.class.getName() + ".enabled");
+
+    /**
+     * Items not started yet will become the newest builds, then builds by decreasing number, then the latest queued items.
+     */
+    private static final Comparator<Queue.BuildableItem> NEWEST_FIRST = Comparator
+            .<Queue.BuildableItem>comparingInt(MilestoneQueueSorter::buildNumber)
+            .thenComparingLong(Queue.Item::getInQueueSince)
+            .reversed();
+
+    @Override
+    public void sortBuildableItems(List<Queue.BuildableItem> buildables) {
+        if (buildables.size() < 2) {
+            return;
+        }
+        MilestoneStorage storage = MilestoneStepExecution.getStorage();
+        // Only the jobs of queued items are looked up, without locking, rather than all jobs tracked by the storage
+        Map<Job<?, ?>, Boolean> usingMilestones = new HashMap<>();
+        Map<Job<?, ?>, List<Queue.BuildableItem>> itemsByJob = new HashMap<>();
+        for (Queue.BuildableItem item : buildables) {
+            Job<?, ?> job = jobOf(item);
+            if (job != null && usingMilestones.computeIfAbsent(job, j -> storage.newestPassedOrdinal(j) != null)) {
+                itemsByJob.computeIfAbsent(job, j -> new ArrayList<>()).add(item);
+            }
+        }
+        if (itemsByJob.isEmpty()) {
+            return;
+        }
+        Map<Job<?, ?>, Iterator<Queue.BuildableItem>> promoted = new HashMap<>();
+        List<Queue.BuildableItem> demoted = new ArrayList<>();
+        itemsByJob.forEach((job, items) -> {
+            items.sort(NEWEST_FIRST);
+            List<Queue.BuildableItem> kept = new ArrayList<>();
+            for (Queue.BuildableItem item : items) {
+                int number = buildNumber(item);
+                if (number != Integer.MAX_VALUE && storage.overtakenBy(job, number, 0) != 0) {
+                    demoted.add(item);
+                } else {
+                    kept.add(item);
+                }
+            }
+            promoted.put(job, kept.iterator());
+        });
+        List<Queue.BuildableItem> sorted = new ArrayList<>(buildables.size());
+        for (Queue.BuildableItem item : buildables) {
+            Iterator<Queue.BuildableItem> items = promoted.get(jobOf(item));
+            if (items == null) {
+                sorted.add(item);
+            } else if (items.hasNext()) {
+                sorted.add(items.next());
+            }
+        }
+        sorted.addAll(demoted);
+        buildables.clear();
+        buildables.addAll(sorted);
+    }
+
+    @CheckForNull
+    private static Job<?, ?> jobOf(Queue.BuildableItem item) {
+        return item.task.getOwnerTask() instanceof Job<?, ?> job ? job : null;
+    }
+
+    /**
+     * @return the number of the build the item belongs to, or {@link Integer#MAX_VALUE} if it will start a new build.
+     */
+    private static int buildNumber(Queue.BuildableItem item) {
+        return item.task.getOwnerExecutable() instanceof Run<?, ?> run ? run.getNumber() : Integer.MAX_VALUE;
+    }
+
+    /**
+     * Hides this sorter unless enabled.
+     */
+    @Extension
+    @Restricted(NoExternalUse.class)
+    public static final class Filter extends ExtensionFilter {
+        @Override
+        public <T> boolean allows(Class<T> type, ExtensionComponent<T> component) {
+            return ENABLED || !(component.getInstance() instanceof MilestoneQueueSorter);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package org.jenkinsci.plugins.pipeline.milestone;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import hudson.Extension;
+import hudson.model.Computer;
+import hudson.model.Executor;
+import hudson.model.Job;
+import hudson.model.PeriodicWork;
+import hudson.model.Run;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
+import org.jenkinsci.plugins.workflow.flow.FlowExecutionList;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Removes the milestones of builds whose completion was missed, as after a crash or when a build got deleted while running.
+ * Otherwise they would stay in the {@link MilestoneStorage} as long as their job, and every later cancellation would consider them.
+ * <p>
+ * Each run checks the next {@link #JOBS_PER_RUN} tracked jobs, going through all of them over successive runs.
+ * Tracked builds are looked up among the builds occupying an executor, so checking a job does not load anything.
+ * A build found without an executor twice in a row, and no longer building, gets {@link MilestoneStorage#reclaim reclaimed}.
+ * Each run also makes {@link DownstreamCancellation} forget the builds it tracks which are no longer running,
+ * only looking up those found without an executor.
+ */
+@Extension
+@Restricted(NoExternalUse.class)
+public class MilestoneReconciler extends PeriodicWork {
+    private static final Logger LOGGER = Logger.getLogger(MilestoneReconciler.class.getName());
+
+    @SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "for script console")
+    public static /* non-final for script console */ int JOBS_PER_RUN = SystemProperties.getInteger(MilestoneReconciler.class.getName() + ".jobsPerRun", 50);
+
+    /**
+     * Jobs left to check before starting over.
+     */
+    private final Deque<Job<?, ?>> pending = new ArrayDeque<>();
+    /**
+     * Builds found without an executor the last time their job got checked.
+     */
+    private final Map<Job<?, ?>, Set<Integer>> suspects = new HashMap<>();
+
+    @Override
+    public long getRecurrencePeriod() {
+        return TimeUnit.SECONDS.toMillis(10);
+    }
+
+    @Override
+    protected synchronized void doRun() {
+        if (!FlowExecutionList.get().isResumptionComplete()) {
+            // Resumed builds get an executor back only once resumed
+            return;
+        }
+        Map<Job<?, ?>, Set<Integer>> running = null;
+        if (!DownstreamCancellation.isEmpty()) {
+            Map<Job<?, ?>, Set<Integer>> onExecutors = running = runningBuilds();
+            int pruned = DownstreamCancellation.prune(id -> {
+                int hash = id.lastIndexOf('#');
+                Job<?, ?> job = Jenkins.get().getItemByFullName(id.substring(0, hash), Job.class);
+                return job != null && onExecutors.getOrDefault(job, Set.of()).contains(Integer.parseInt(id.substring(hash + 1)));
+            });
+            if (pruned > 0) {
+                LOGGER.info(() -> "Stopped tracking " + pruned + " downstream builds which are no longer running");
+            }
+        }
+        MilestoneStorage storage = MilestoneStepExecution.getStorage();
+        if (pending.isEmpty()) {
+            pending.addAll(storage.getTrackedJobs());
+            suspects.keySet().retainAll(pending);
+            if (pending.isEmpty()) {
+                return;
+            }
+        }
+        if (running == null) {
+            running = runningBuilds();
+        }
+        int reclaimed = 0;
+        for (int i = 0; i < JOBS_PER_RUN && !pending.isEmpty(); i++) {
+            Job<?, ?> job = pending.poll();
+            Set<Integer> runningBuilds = running.getOrDefault(job, Set.of());
+            Set<Integer> previous = suspects.getOrDefault(job, Set.of());
+            Set<Integer> current = new HashSet<>();
+            List<Integer> stale = new ArrayList<>();
+            int count = storage.reclaim(job, number -> {
+                if (runningBuilds.contains(number)) {
+                    return false;
+                }
+                if (!previous.contains(number)) {
+                    current.add(number);
+                    return false;
+                }
+                // Second strike: rare enough to afford looking at the build itself
+                Run<?, ?> run = job.getBuildByNumber(number);
+                if (run == null || !run.isBuilding()) {
+                    stale.add(number);
+                    return true;
+                }
+                return false;
+            });
+            if (current.isEmpty()) {
+                suspects.remove(job);
+            } else {
+                suspects.put(job, current);
+            }
+            if (count > 0) {
+                LOGGER.info(() -> "Reclaimed milestones of " + count + " builds of " + job.getFullName() + " which are no longer running");
+                MilestoneStatistics.get().onReclaimed(job, stale);
+                reclaimed += count;
+            }
+        }
+        int total = reclaimed;
+        LOGGER.fine(() -> "Reclaimed milestones of " + total + " builds, " + pending.size() + " jobs left to check");
+    }
+
+    private static Map<Job<?, ?>, Set<Integer>> runningBuilds() {
+        Map<Job<?, ?>, Set<Integer>> running = new HashMap<>();
+        for (Computer computer : Jenkins.get().getComputers()) {
+            for (Executor executor : computer.getAllExecutors()) {
+                if (executor.getCurrentExecutable() instanceof Run<?, ?> run) {
+                    running.computeIfAbsent(run.getParent(), j -> new HashSet<>()).add(run.getNumber());
+                }
+            }
+        }
+        return running;
+    }
+}
@@ -0,0 +1,265 @@
+package org.jenkinsci.plugins.pipeline.milestone;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.model.Job;
+import hudson.model.Run;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Controller-wide counters about builds going through milestones.
+ * Counters are updated as builds pass milestones, get cancelled and complete, so reading them never needs to look at jobs or builds.
+ * Builds are only counted once they pass their first milestone, or get cancelled by a newer build, so that jobs not using milestones
+ * do not show up.
+ */
+@Extension
+@Restricted(NoExternalUse.class)
+public class MilestoneStatistics {
+
+    private final ConcurrentMap<String, JobStatistics> jobs = new ConcurrentHashMap<>();
+    private final LongAdder reclaimed = new LongAdder();
+    private final LongAdder escalated = new LongAdder();
+    /**
+     * Time superseded builds took to complete once cancelled, in milliseconds.
+     */
+    private final LatencyHistogram releaseMillis = new LatencyHistogram();
+
+    @NonNull
+    public static MilestoneStatistics get() {
+        return ExtensionList.lookupSingleton(MilestoneStatistics.class);
+    }
+
+    /**
+     * Called when a build which passed a milestone before a restart resumes.
+     */
+    void onResumed(@NonNull Run<?, ?> run) {
+        forJob(run.getParent()).running.add(run.getNumber());
+    }
+
+    void onPassed(@NonNull Run<?, ?> run) {
+        JobStatistics stats = forJob(run.getParent());
+        stats.passed.increment();
+        stats.track(run.getNumber());
+    }
+
+    void onCancelled(@NonNull Run<?, ?> run) {
+        JobStatistics stats = forJob(run.getParent());
+        stats.track(run.getNumber());
+        if (stats.cancelledBuilds.putIfAbsent(run.getNumber(), System.currentTimeMillis()) == null) {
+            stats.cancelled.increment();
+            stats.wastedMillis.add(Math.max(0, System.currentTimeMillis() - run.getStartTimeInMillis()));
+        }
+    }
+
+    void onCompleted(@NonNull Run<?, ?> run) {
+        JobStatistics stats = jobs.get(run.getParent().getFullName());
+        if (stats != null) {
+            stats.running.remove(run.getNumber());
+            Long cancelledAt = stats.cancelledBuilds.remove(run.getNumber());
+            if (cancelledAt != null) {
+                releaseMillis.record(System.currentTimeMillis() - cancelledAt);
+            }
+        }
+    }
+
+    /**
+     * Called when a superseded build still running got {@link CancellationEscalator terminated or killed}.
+     */
+    void onEscalated(@NonNull Run<?, ?> run) {
+        escalated.increment();
+    }
+
+    /**
+     * Called when the milestones of builds whose completion was missed got {@link MilestoneStorage#reclaim reclaimed}.
+     */
+    void onReclaimed(@NonNull Job<?, ?> job, @NonNull Collection<Integer> builds) {
+        reclaimed.add(builds.size());
+        JobStatistics stats = jobs.get(job.getFullName());
+        if (stats != null) {
+            stats.running.removeAll(builds);
+            stats.cancelledBuilds.keySet().removeAll(builds);
+        }
+    }
+
+    void onDeleted(@NonNull Job<?, ?> job) {
+        jobs.remove(job.getFullName());
+    }
+
+    void onRenamed(@NonNull String oldFullName, @NonNull String newFullName) {
+        JobStatistics stats = jobs.remove(oldFullName);
+        if (stats != null) {
+            jobs.put(newFullName, stats.renamed(newFullName));
+        }
+    }
+
+    private JobStatistics forJob(Job<?, ?> job) {
+        return jobs.computeIfAbsent(job.getFullName(), JobStatistics::new);
+    }
+
+    /**
+     * @return statistics for every job seen so far, jobs with the most cancelled builds first.
+     */
+    @NonNull
+    public List<JobStatistics> getJobs() {
+        return jobs.values().stream()
+                .sorted(Comparator.comparingLong(JobStatistics::getCancelled).reversed().thenComparing(JobStatistics::getFullName))
+                .toList();
+    }
+
+    public long getTracked() {
+        return jobs.values().stream().mapToLong(JobStatistics::getTracked).sum();
+    }
+
+    public long getStarted() {
+        return jobs.values().stream().mapToLong(JobStatistics::getStarted).sum();
+    }
+
+    public long getCancelled() {
+        return jobs.values().stream().mapToLong(JobStatistics::getCancelled).sum();
+    }
+
+    /**
+     * @return the builds whose completion was missed, removed by {@link MilestoneReconciler}.
+     */
+    public long getReclaimed() {
+        return reclaimed.sum();
+    }
+
+    public long getEscalated() {
+        return escalated.sum();
+    }
+
+    /**
+     * @return how long superseded builds took to complete once cancelled, in seconds, for half of them.
+     */
+    @NonNull
+    public String getReleaseMedianSeconds() {
+        return JobStatistics.seconds(releaseMillis.getValueAtPercentile(50));
+    }
+
+    /**
+     * @return how long superseded builds took to complete once cancelled, in seconds, for 99% of them.
+     */
+    @NonNull
+    public String getRelease99thSeconds() {
+        return JobStatistics.seconds(releaseMillis.getValueAtPercentile(99));
+    }
+
+    @NonNull
+    public String getCancellationRate() {
+        return JobStatistics.rate(getCancelled(), getStarted());
+    }
+
+    @NonNull
+    public String getWastedMinutes() {
+        return JobStatistics.minutes(jobs.values().stream().mapToLong(s -> s.wastedMillis.sum()).sum());
+    }
+
+    /**
+     * Counters for a single job.
+     */
+    @Restricted(NoExternalUse.class)
+    public static final class JobStatistics {
+        private final String fullName;
+        private final LongAdder started;
+        /**
+         * Running builds which passed a milestone or got cancelled.
+         */
+        private final Set<Integer> running;
+        private final LongAdder passed;
+        private final LongAdder cancelled;
+        private final LongAdder wastedMillis;
+        /**
+         * Time at which running builds got cancelled, keyed by build number.
+         */
+        private final ConcurrentMap<Integer, Long> cancelledBuilds;
+
+        JobStatistics(String fullName) {
+            this(fullName, new LongAdder(), ConcurrentHashMap.newKeySet(), new LongAdder(), new LongAdder(), new LongAdder(), new ConcurrentHashMap<>());
+        }
+
+        private JobStatistics(String fullName, LongAdder started, Set<Integer> running, LongAdder passed, LongAdder cancelled, LongAdder wastedMillis, ConcurrentMap<Integer, Long> cancelledBuilds) {
+            this.fullName = fullName;
+            this.started = started;
+            this.running = running;
+            this.passed = passed;
+            this.cancelled = cancelled;
+            this.wastedMillis = wastedMillis;
+            this.cancelledBuilds = cancelledBuilds;
+        }
+
+        JobStatistics renamed(String newFullName) {
+            return new JobStatistics(newFullName, started, running, passed, cancelled, wastedMillis, cancelledBuilds);
+        }
+
+        /**
+         * Counts a build the first time it uses milestones.
+         */
+        void track(int number) {
+            if (running.add(number)) {
+                started.increment();
+            }
+        }
+
+        @NonNull
+        public String getFullName() {
+            return fullName;
+        }
+
+        /**
+         * @return builds currently running which used milestones.
+         */
+        public long getTracked() {
+            return running.size();
+        }
+
+        /**
+         * @return builds which used milestones since Jenkins started.
+         */
+        public long getStarted() {
+            return started.sum();
+        }
+
+        public long getPassed() {
+            return passed.sum();
+        }
+
+        public long getCancelled() {
+            return cancelled.sum();
+        }
+
+        @NonNull
+        public String getCancellationRate() {
+            return rate(getCancelled(), getStarted());
+        }
+
+        /**
+         * @return the time cancelled builds had been running before being superseded, in minutes.
+         */
+        @NonNull
+        public String getWastedMinutes() {
+            return minutes(wastedMillis.sum());
+        }
+
+        static String rate(long cancelled, long started) {
+            return started == 0 ? "-" : String.format("%.1f%%", 100.0 * cancelled / started);
+        }
+
+        static String minutes(long millis) {
+            return String.format("%.1f", millis / 60000.0);
+        }
+
+        static String seconds(long millis) {
+            return String.format("%.1f", millis / 1000.0);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package org.jenkinsci.plugins.pipeline.milestone;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.model.ManagementLink;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Shows {@link MilestoneStatistics} in Manage Jenkins.
+ */
+@Extension
+@Restricted(NoExternalUse.class)
+public class MilestoneStatisticsLink extends ManagementLink {
+
+    @Override
+    public String getIconFileName() {
+        return "symbol-analytics";
+    }
+
+    @Override
+    public String getUrlName() {
+        return "milestones";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "Milestones";
+    }
+
+    @Override
+    public String getDescription() {
+        return "Builds tracked by the milestone step and how many of them got superseded.";
+    }
+
+    @NonNull
+    @Override
+    public Category getCategory() {
+        return Category.STATUS;
+    }
+
+    public MilestoneStatistics getStatistics() {
+        return MilestoneStatistics.get();
+    }
+}
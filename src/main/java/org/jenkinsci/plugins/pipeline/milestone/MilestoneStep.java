@@ -27,13 +27,24 @@ package org.jenkinsci.plugins.pipeline.milestone;
 import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.Extension;
+import hudson.ExtensionList;
 import hudson.Util;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
 import hudson.model.Run;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
-import java.util.TreeMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import org.jenkinsci.plugins.workflow.graph.FlowNode;
 import org.jenkinsci.plugins.workflow.steps.Step;
 import org.jenkinsci.plugins.workflow.steps.StepContext;
@@ -71,6 +82,21 @@ public class MilestoneStep extends Step {
      */
     private boolean unsafe;
 
+    /**
+     * Optional parallel.
+     */
+    private boolean parallel;
+
+    /**
+     * Optional concurrency, {@code 0} for the default of keeping only the newest build.
+     */
+    private int concurrency;
+
+    /**
+     * Optional debounce, in seconds.
+     */
+    private int debounce;
+
     @DataBoundConstructor
     public MilestoneStep(@CheckForNull Integer ordinal) {
         this.ordinal = ordinal;
@@ -86,6 +112,21 @@ public class MilestoneStep extends Step {
         this.unsafe = unsafe;
     }
 
+    @DataBoundSetter
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    @DataBoundSetter
+    public void setConcurrency(int concurrency) {
+        this.concurrency = Math.max(0, concurrency);
+    }
+
+    @DataBoundSetter
+    public void setDebounce(int debounce) {
+        this.debounce = Math.max(0, debounce);
+    }
+
     @CheckForNull
     public String getLabel() {
         return label;
@@ -100,22 +141,31 @@ public class MilestoneStep extends Step {
         return unsafe;
     }
 
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public int getDebounce() {
+        return debounce;
+    }
+
     @Override
     public StepExecution start(StepContext context) throws Exception {
-        return new MilestoneStepExecution(context, label, ordinal, unsafe);
+        if (!unsafe && !parallel) {
+            MilestoneStepExecution.checkNotInsideParallel(context);
+        }
+        if (debounce > 0) {
+            return new DebouncedMilestoneStepExecution(context, this);
+        }
+        return new MilestoneStepExecution(context, this);
     }
 
     @Extension
     public static final class DescriptorImpl extends StepDescriptor {
-        /**
-         * @deprecated Replaced by {@link DefaultMilestoneStorage#milestonesPerJob}.
-         */
-        @Deprecated
-        private transient Map<String, Map<Integer, Milestone>> milestonesByOrdinalByJob;
-
-        public DescriptorImpl() {
-            load();
-        }
 
         @Override
         public Set<? extends Class<?>> getRequiredContext() {
@@ -133,24 +183,69 @@ public class MilestoneStep extends Step {
             return "The milestone step forces all builds to go through in order";
         }
 
-        @Override
-        public void load() {
-            super.load();
-            if (milestonesByOrdinalByJob == null) {
-                milestonesByOrdinalByJob = new TreeMap<>();
-            }
-            LOGGER.log(Level.FINE, "load: {0}", milestonesByOrdinalByJob);
+        /**
+         * @deprecated Milestones are tracked by {@link MilestoneStorage}, this map is always empty.
+         */
+        @Deprecated
+        public Map<String, Map<Integer, Milestone>> getMilestonesByOrdinalByJob() {
+            return Collections.emptyMap();
         }
 
-        @Override
-        public void save() {
-            super.save();
-            LOGGER.log(Level.FINE, "save: {0}", milestonesByOrdinalByJob);
+        /**
+         * Older versions persisted {@code milestonesByOrdinalByJob} in the descriptor configuration.
+         * That state is no longer used, so rather than deserializing it on every startup, stream through it once
+         * and delete the file. The descriptor has nothing else to persist, so a missing file means the migration is done.
+         */
+        @Initializer(after = InitMilestone.EXTENSIONS_AUGMENTED)
+        public static void discardLegacyMilestones() {
+            ExtensionList.lookupSingleton(DescriptorImpl.class).discardLegacyConfigFile();
         }
 
-        @Deprecated
-        public Map<String, Map<Integer, Milestone>> getMilestonesByOrdinalByJob() {
-            return milestonesByOrdinalByJob;
+        private void discardLegacyConfigFile() {
+            File file = getConfigFile().getFile();
+            if (!file.isFile()) {
+                return;
+            }
+            try {
+                int jobs = countLegacyJobs(file);
+                Files.deleteIfExists(file.toPath());
+                LOGGER.log(Level.INFO, "Discarded legacy milestones for {0} jobs from {1}", new Object[] {jobs, file});
+            } catch (IOException | XMLStreamException e) {
+                LOGGER.log(Level.WARNING, e, () -> "Failed to discard legacy milestones from " + file);
+            }
+        }
+
+        private static int countLegacyJobs(File file) throws IOException, XMLStreamException {
+            XMLInputFactory factory = XMLInputFactory.newFactory();
+            factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+            factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+            try (InputStream is = Files.newInputStream(file.toPath())) {
+                XMLStreamReader reader = factory.createXMLStreamReader(is);
+                try {
+                    int depth = 0;
+                    int jobs = 0;
+                    boolean legacy = false;
+                    while (reader.hasNext()) {
+                        switch (reader.next()) {
+                            case XMLStreamConstants.START_ELEMENT -> {
+                                depth++;
+                                if (depth == 2) {
+                                    legacy = "milestonesByOrdinalByJob".equals(reader.getLocalName());
+                                } else if (depth == 3 && legacy) {
+                                    jobs++;
+                                }
+                            }
+                            case XMLStreamConstants.END_ELEMENT -> depth--;
+                            default -> {
+                                // Element contents are skipped
+                            }
+                        }
+                    }
+                    return jobs;
+                } finally {
+                    reader.close();
+                }
+            }
         }
     }
 }
@@ -38,34 +38,66 @@ import hudson.model.listeners.ItemListener;
 import hudson.model.listeners.RunListener;
 import java.io.IOException;
 import java.io.Serial;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.jenkinsci.plugins.workflow.actions.LabelAction;
+import org.jenkinsci.plugins.workflow.actions.ThreadNameAction;
+import org.jenkinsci.plugins.workflow.actions.TimingAction;
 import org.jenkinsci.plugins.workflow.flow.FlowExecution;
 import org.jenkinsci.plugins.workflow.flow.FlowExecutionListener;
 import org.jenkinsci.plugins.workflow.flow.FlowExecutionOwner;
+import org.jenkinsci.plugins.workflow.graph.BlockStartNode;
 import org.jenkinsci.plugins.workflow.graph.FlowNode;
 import org.jenkinsci.plugins.workflow.graphanalysis.FlowScanningUtils;
 import org.jenkinsci.plugins.workflow.graphanalysis.LinearScanner;
 import org.jenkinsci.plugins.workflow.steps.StepContext;
-import org.jenkinsci.plugins.workflow.steps.SynchronousStepExecution;
+import org.jenkinsci.plugins.workflow.steps.SynchronousNonBlockingStepExecution;
 
-public class MilestoneStepExecution extends SynchronousStepExecution<Void> {
+public class MilestoneStepExecution extends SynchronousNonBlockingStepExecution<Void> {
 
     private static final Predicate<FlowNode> ORDINAL_MATCHER = FlowScanningUtils.hasActionPredicate(OrdinalAction.class);
     private static final Logger LOGGER = Logger.getLogger(MilestoneStepExecution.class.getName());
     private final String label;
     private final Integer ordinal;
-    private final boolean unsafe;
+    private final boolean parallel;
+    private final int concurrency;
+    /**
+     * When the previous milestone of the build was passed, {@code 0} if unknown.
+     */
+    private transient long previousMilestoneTime;
+
+    /**
+     * Latest milestone passed by each parallel branch of running builds using {@link MilestoneStep#isParallel()}.
+     * Keyed by the id of the branch start node, or {@link #ROOT_BRANCH} outside any branch.
+     */
+    private static final Map<Run<?, ?>, Map<String, BranchMilestone>> BRANCH_MILESTONES = Collections.synchronizedMap(new WeakHashMap<>());
+    private static final String ROOT_BRANCH = "";
 
     public MilestoneStepExecution(@NonNull StepContext context, @CheckForNull String label, @CheckForNull Integer ordinal, boolean unsafe) {
+        this(context, step(label, ordinal, unsafe));
+    }
+
+    public MilestoneStepExecution(@NonNull StepContext context, @NonNull MilestoneStep step) {
         super(context);
-        this.label = label;
-        this.ordinal = ordinal;
-        this.unsafe = unsafe;
+        this.label = step.getLabel();
+        this.ordinal = step.getOrdinal();
+        this.parallel = step.isParallel();
+        this.concurrency = step.getConcurrency();
+    }
+
+    private static MilestoneStep step(@CheckForNull String label, @CheckForNull Integer ordinal, boolean unsafe) {
+        MilestoneStep step = new MilestoneStep(ordinal);
+        step.setLabel(label);
+        step.setUnsafe(unsafe);
+        return step;
     }
 
     /**
@@ -76,51 +108,153 @@ public class MilestoneStepExecution extends SynchronousStepExecution<Void> {
      */
     public static Map<Integer, Integer> getBuildsToCancel(int buildNumber, @CheckForNull Integer ordinal, @NonNull Map<Integer, Integer> milestones) {
         Map<Integer, Integer> result = new HashMap<>();
-        for (Map.Entry<Integer, Integer> entry : milestones.entrySet()) {
-            if (entry.getKey() < buildNumber) {
-                if (entry.getValue() == null || (ordinal != null && entry.getValue() < ordinal)) {
-                    Integer key = entry.getKey();
-                    result.put(key, buildNumber);
-                }
-            } else if (entry.getKey() > buildNumber && ((ordinal == null && entry.getValue() != null) || (ordinal != null  && entry.getValue() != null && entry.getValue() >= ordinal))) {
-                // Defensive, this should never happen.
-                result.put(buildNumber, entry.getKey());
-            }
-        }
+        SupersedeOlderBuildsPolicy.INSTANCE.selectBuildsToCancel(buildNumber, ordinal, MilestoneCancellationPolicy.navigable(milestones), result::put);
         return result;
     }
 
     @Override
     public Void run() throws Exception {
+        pass(enter());
+        return null;
+    }
+
+    /**
+     * Records the milestone on the flow node of the step.
+     * @return the ordinal of the milestone
+     */
+    int enter() throws IOException, InterruptedException {
         if (label != null) {
             getContext().get(FlowNode.class).addAction(new LabelAction(label));
         }
-        tryToPass(getContext().get(Run.class), getContext(), processOrdinal());
-        return null;
+        return processOrdinal();
     }
 
     /**
-     * Gets the next ordinal and throw {@link AbortException} the milestone lives inside a parallel step branch.
+     * Passes a milestone previously returned by {@link #enter()}, cancelling builds as needed.
      */
-    private synchronized int processOrdinal() throws IOException, InterruptedException {
-        var node = getContext().get(FlowNode.class);
-        List<FlowNode> heads = node.getExecution().getCurrentHeads();
-        if (heads.size() > 1 && !unsafe) {  // TA-DA!  We're inside a parallel, which is forbidden.
+    void pass(int ordinal) throws IOException, InterruptedException {
+        tryToPass(getContext().get(Run.class), getContext(), ordinal);
+    }
+
+    /**
+     * Throws {@link AbortException} if the milestone lives inside a parallel step branch.
+     * Reads the current heads of the flow execution, so must be called from the CPS VM thread, by {@link MilestoneStep#start}.
+     */
+    static void checkNotInsideParallel(@NonNull StepContext context) throws IOException, InterruptedException {
+        if (context.get(FlowNode.class).getExecution().getCurrentHeads().size() > 1) {  // TA-DA!  We're inside a parallel, which is forbidden.
             throw new AbortException("Using a milestone step inside parallel is not allowed");
         }
-        var nextOrdinal = getNextOrdinal(getLatestOrdinalAction(heads));
+    }
+
+    /**
+     * Gets the next ordinal.
+     * Runs outside the CPS VM thread, so only looks at the flow graph from the node of the step rather than at the current heads.
+     */
+    private int processOrdinal() throws IOException, InterruptedException {
+        var node = getContext().get(FlowNode.class);
+        if (parallel) {
+            return processBranchOrdinal(getContext().get(Run.class), node);
+        }
+        FlowNode lastOrdinalNode = findPreviousOrdinalNode(getContext().get(Run.class), node);
+        var nextOrdinal = getNextOrdinal(lastOrdinalNode != null ? lastOrdinalNode.getAction(OrdinalAction.class).ordinal : null);
+        previousMilestoneTime = lastOrdinalNode != null ? TimingAction.getStartTime(lastOrdinalNode) : 0;
+        node.addAction(new OrdinalAction(nextOrdinal));
+        return nextOrdinal;
+    }
+
+    /**
+     * Gets the next ordinal from the latest milestone passed by the enclosing parallel branch.
+     * Branches inherit the milestone of their enclosing branch, and milestones outside any branch follow the highest one passed so far.
+     * The flow graph is only scanned, from the current node, when no milestone was tracked yet, for example after a restart.
+     */
+    private int processBranchOrdinal(Run<?, ?> run, FlowNode node) throws AbortException {
+        var milestones = BRANCH_MILESTONES.computeIfAbsent(run, r -> new ConcurrentHashMap<>());
+        List<String> branches = getEnclosingBranches(node);
+        String branch = branches.get(0);
+        BranchMilestone previous = null;
+        if (branch.equals(ROOT_BRANCH)) {
+            previous = milestones.values().stream().max(Comparator.comparingInt(BranchMilestone::ordinal)).orElse(null);
+        } else {
+            for (String enclosing : branches) {
+                previous = milestones.get(enclosing);
+                if (previous != null) {
+                    break;
+                }
+            }
+        }
+        if (previous == null) {
+            FlowNode lastOrdinalNode = findPreviousOrdinalNode(run, node);
+            if (lastOrdinalNode != null) {
+                previous = new BranchMilestone(lastOrdinalNode.getAction(OrdinalAction.class).ordinal, TimingAction.getStartTime(lastOrdinalNode));
+            }
+        }
+        var nextOrdinal = getNextOrdinal(previous != null ? previous.ordinal() : null);
+        previousMilestoneTime = previous != null ? previous.timestamp() : 0;
+        milestones.merge(branch, new BranchMilestone(nextOrdinal, System.currentTimeMillis()), (a, b) -> a.ordinal() >= b.ordinal() ? a : b);
         node.addAction(new OrdinalAction(nextOrdinal));
         return nextOrdinal;
     }
 
-    private static OrdinalAction getLatestOrdinalAction(List<FlowNode> heads) {
-        FlowNode lastOrdinalNode = new LinearScanner().findFirstMatch(heads.get(0), ORDINAL_MATCHER);
-        return lastOrdinalNode != null ? lastOrdinalNode.getAction(OrdinalAction.class) : null;
+    /**
+     * @return the ids of the parallel branches enclosing the node, innermost first, always ending with {@link #ROOT_BRANCH}.
+     */
+    static List<String> getEnclosingBranches(FlowNode node) {
+        List<String> branches = new ArrayList<>();
+        for (BlockStartNode block : node.getEnclosingBlocks()) {
+            if (block.getPersistentAction(ThreadNameAction.class) != null) {
+                branches.add(block.getId());
+            }
+        }
+        branches.add(ROOT_BRANCH);
+        return branches;
+    }
+
+    private record BranchMilestone(int ordinal, long timestamp) {}
+
+    /**
+     * Scans the flow graph back from the given node for the previous milestone.
+     */
+    @CheckForNull
+    static FlowNode findPreviousOrdinalNode(Run<?, ?> run, FlowNode node) {
+        var event = new MilestoneEvents.OrdinalScan();
+        if (!event.isEnabled()) {
+            return new LinearScanner().findFirstMatch(node, ORDINAL_MATCHER);
+        }
+        event.begin();
+        FlowNode found = new LinearScanner().findFirstMatch(node, n -> {
+            event.nodes++;
+            return ORDINAL_MATCHER.apply(n);
+        });
+        if (event.shouldCommit()) {
+            event.job = run.getParent().getFullName();
+            event.build = run.getNumber();
+            if (found != null) {
+                event.ordinal = found.getAction(OrdinalAction.class).ordinal;
+            }
+            event.commit();
+        }
+        return found;
     }
 
-    private int getNextOrdinal(@CheckForNull OrdinalAction action) throws AbortException {
-        Integer previousOrdinal = action != null ? action.ordinal : null;
+    /**
+     * @return the highest milestone passed by any of the current heads of a build, which may be in distinct parallel branches.
+     */
+    @CheckForNull
+    private static Integer getLatestOrdinal(Run<?, ?> run, List<FlowNode> heads) {
+        Integer latest = null;
+        for (FlowNode head : heads) {
+            FlowNode lastOrdinalNode = findPreviousOrdinalNode(run, head);
+            if (lastOrdinalNode != null) {
+                int ordinal = lastOrdinalNode.getAction(OrdinalAction.class).ordinal;
+                if (latest == null || ordinal > latest) {
+                    latest = ordinal;
+                }
+            }
+        }
+        return latest;
+    }
 
+    private int getNextOrdinal(@CheckForNull Integer previousOrdinal) throws AbortException {
         // If step.ordinal is set then use it and check order with the previous one
         // Otherwise use calculated ordinal (previousOrdinal + 1)
         int nextOrdinal = 0;
@@ -143,36 +277,172 @@ public class MilestoneStepExecution extends SynchronousStepExecution<Void> {
         return nextOrdinal;
     }
 
-    private static class OrdinalAction extends InvisibleAction {
+    static class OrdinalAction extends InvisibleAction {
         int ordinal;
         public OrdinalAction(int ordinal) {
             this.ordinal = ordinal;
         }
     }
 
-    private synchronized void tryToPass(Run<?,?> r, StepContext context, int ordinal) {
+    private void tryToPass(Run<?,?> r, StepContext context, int ordinal) {
         LOGGER.log(Level.FINE, () -> "build " + r + " trying to pass milestone " + ordinal);
         println(context, "Trying to pass milestone " + ordinal);
-        MilestoneStorage milestoneStorage = getStorage();
-        var milestones = milestoneStorage.store(r, ordinal);
-        LOGGER.fine(() -> "build " + r + " : milestones after put -> " + milestones);
-        var buildsToCancel = getBuildsToCancel(r.getNumber(), ordinal, milestones);
-        cancelAll(r.getParent(), buildsToCancel);
+        long since = previousMilestoneTime > 0 ? previousMilestoneTime : r.getStartTimeInMillis();
+        var milestones = passMilestone(r, ordinal, label, since);
+        if (milestones != null && concurrency > 0) {
+            enforceConcurrency(r, ordinal, milestones);
+        }
+    }
+
+    /**
+     * Records a build passing a milestone and cancels the builds it supersedes.
+     * @param since when the build passed its previous milestone, or started
+     * @return the milestones of the job, or {@code null} if the build got cancelled instead, or the cancellations got deferred.
+     */
+    @CheckForNull
+    static Map<Integer, Integer> passMilestone(Run<?, ?> r, int ordinal, @CheckForNull String label, long since) {
+        var event = new MilestoneEvents.Pass();
+        event.begin();
+        try {
+            MilestoneStorage milestoneStorage = getStorage();
+            if (cancelIfOvertaken(r, ordinal)) {
+                return null;
+            }
+            var milestones = milestoneStorage.store(r, ordinal);
+            MilestoneTimelineAction.onPassed(r, ordinal, label);
+            StageMilestones.onPassed(r, ordinal);
+            MilestoneStatistics.get().onPassed(r);
+            milestoneStorage.recordLatency(r, ordinal, label, System.currentTimeMillis() - since);
+            LOGGER.fine(() -> "build " + r + " : milestones after put -> " + milestones);
+            if (ResumedMilestones.deferCancellation(r, ordinal)) {
+                LOGGER.fine(() -> "build " + r + " : milestones of resumed builds not loaded yet, deferring cancellation");
+                return null;
+            }
+            CompletionBatcher.flush(r.getParent(), milestones);
+            cancelAll(r.getParent(), r.getNumber(), ordinal, milestones);
+            return milestones;
+        } finally {
+            if (event.shouldCommit()) {
+                event.job = r.getParent().getFullName();
+                event.build = r.getNumber();
+                event.ordinal = ordinal;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Cancels a build right away if a newer build is known to have passed the milestone it is about to pass,
+     * as {@link SupersedeOlderBuildsPolicy} would do after storing it.
+     * @return {@code true} if cancelled
+     */
+    private static boolean cancelIfOvertaken(Run<?, ?> r, int ordinal) {
+        Job<?, ?> job = r.getParent();
+        int newer = getStorage().overtakenBy(job, r.getNumber(), ordinal);
+        if (newer == 0 || !(MilestoneCancellationPolicy.forJob(job) instanceof SupersedeOlderBuildsPolicy)) {
+            return false;
+        }
+        LOGGER.fine(() -> "build " + r + " already overtaken by #" + newer + " at milestone " + ordinal);
+        MilestoneTimelineAction.onCancelled(r, ordinal, job.getFullName() + "#" + newer);
+        cancel(job, r.getNumber(), newer);
+        return true;
+    }
+
+    /**
+     * Cancels the oldest builds at the given milestone while more than {@link #concurrency} of them are running,
+     * possibly including the given build itself.
+     * Builds already getting cancelled are not counted.
+     */
+    private void enforceConcurrency(Run<?, ?> r, int ordinal, Map<Integer, Integer> milestones) {
+        Job<?, ?> job = r.getParent();
+        int count = getStorage().countBuildsAt(job, ordinal);
+        if (count < 0) {
+            count = (int) milestones.values().stream().filter(o -> o != null && o == ordinal).count();
+        }
+        if (count <= concurrency) {
+            return;
+        }
+        List<Integer> running = new ArrayList<>();
+        for (Map.Entry<Integer, Integer> entry : MilestoneCancellationPolicy.navigable(milestones).entrySet()) {
+            if (entry.getValue() != null && entry.getValue() == ordinal && !isCancelled(job.getBuildByNumber(entry.getKey()))) {
+                running.add(entry.getKey());
+            }
+        }
+        int excess = running.size() - concurrency;
+        if (excess <= 0) {
+            return;
+        }
+        LOGGER.fine("build " + r + " : " + excess + " builds over the concurrency of milestone " + ordinal);
+        int newest = running.get(running.size() - 1);
+        for (int number : running.subList(0, excess)) {
+            cancel(job, number, newest);
+        }
+    }
+
+    /**
+     * @return whether the build is no longer running or already got interrupted
+     */
+    private static boolean isCancelled(@CheckForNull Run<?, ?> run) {
+        if (run == null || !run.isBuilding()) {
+            return true;
+        }
+        var executor = run.getExecutor();
+        return executor != null && (executor.isInterrupted() || !executor.getCausesOfInterruption().isEmpty());
     }
 
     /**
-     * Cancel all runs with the given numbers
+     * Cancel all runs selected by the {@link MilestoneCancellationPolicy} of the job.
      */
-    private static void cancelAll(Job<?,?> job, Map<Integer, Integer> buildsToCancel) {
-        LOGGER.fine(() -> "Cancelling " + buildsToCancel);
-        for (var buildEntry : buildsToCancel.entrySet()) {
-            var referenceBuildNumber = buildEntry.getValue();
-            Run<?, ?> referenceRun = job.getBuildByNumber(referenceBuildNumber);
-            getStorage().cancel(job, buildEntry.getKey(), referenceRun == null ? job.getFullName() + "#" + referenceBuildNumber : referenceRun.getExternalizableId());
+    static void cancelAll(Job<?,?> job, int buildNumber, @CheckForNull Integer ordinal, Map<Integer, Integer> milestones) {
+        var event = new MilestoneEvents.CancelAll();
+        event.begin();
+        MilestoneCancellationPolicy.Cancellation cancellation = (toCancel, referenceBuildNumber) -> cancel(job, toCancel, referenceBuildNumber);
+        if (event.isEnabled()) {
+            var cancel = cancellation;
+            cancellation = (toCancel, referenceBuildNumber) -> {
+                event.victims++;
+                cancel.cancel(toCancel, referenceBuildNumber);
+            };
         }
+        MilestoneCancellationPolicy.forJob(job).selectBuildsToCancel(buildNumber, ordinal, MilestoneCancellationPolicy.navigable(milestones), cancellation);
+        if (event.shouldCommit()) {
+            event.job = job.getFullName();
+            event.build = buildNumber;
+            event.ordinal = ordinal != null ? ordinal : -1;
+            event.commit();
+        }
+    }
+
+    private static void cancel(Job<?,?> job, int buildNumber, int referenceBuildNumber) {
+        LOGGER.fine(() -> "Cancelling " + job.getFullName() + "#" + buildNumber + " superseded by #" + referenceBuildNumber);
+        Run<?, ?> referenceRun = job.getBuildByNumber(referenceBuildNumber);
+        cancel(job, buildNumber, referenceRun == null ? job.getFullName() + "#" + referenceBuildNumber : referenceRun.getExternalizableId());
     }
 
-    private static void println(StepContext context, String message) {
+    /**
+     * Cancels a build through {@link MilestoneStorage#cancel}, then notifies whatever follows cancellations if it got interrupted.
+     * @param externalizableId the externalizable id of the build causing the cancellation
+     */
+    static void cancel(Job<?, ?> job, int buildNumber, @NonNull String externalizableId) {
+        var event = new MilestoneEvents.Cancel();
+        event.begin();
+        getStorage().cancel(job, buildNumber, externalizableId);
+        Run<?, ?> run = job.getBuildByNumber(buildNumber);
+        if (run != null && run.getExecutor() != null) {
+            MilestoneStatistics.get().onCancelled(run);
+            CancellationEscalator.onInterrupted(run);
+            MilestoneTimelineAction.onCancelled(run, null, externalizableId);
+            DownstreamCancellation.onInterrupted(run, externalizableId);
+        }
+        if (event.shouldCommit()) {
+            event.job = job.getFullName();
+            event.build = buildNumber;
+            event.newerBuild = externalizableId;
+            event.commit();
+        }
+    }
+
+    static void println(StepContext context, String message) {
         if (!context.isReady()) {
             LOGGER.log(Level.FINE, "cannot print message ‘{0}’ to dead {1}", new Object[] {message, context});
             return;
@@ -191,18 +461,25 @@ public class MilestoneStepExecution extends SynchronousStepExecution<Void> {
             if (isPipelineRun(r)) {
                 MilestoneStorage milestoneStorage = getStorage();
                 milestoneStorage.store(r, null);
+                cancelIfOvertaken(r, 0);
             }
         }
 
         @Override public void onCompleted(Run<?,?> r, @NonNull TaskListener listener) {
             if (isPipelineRun(r)) {
                 MilestoneStorage milestoneStorage = getStorage();
+                ResumedMilestones.onCompleted(r);
+                CancellationEscalator.onCompleted(r);
                 var result = milestoneStorage.clear(r);
+                BRANCH_MILESTONES.remove(r);
+                StageMilestones.onCompleted(r);
+                MilestoneStatistics.get().onCompleted(r);
                 LOGGER.finest(() -> "milestones after completion: " + result.milestones());
                 if (result.lastMilestoneBeforeCompletion() != null) {
                     LOGGER.finest(() -> "Build" + r + " last milestone before completion: " + result.lastMilestoneBeforeCompletion());
-                    var buildsToCancel = getBuildsToCancel(r.getNumber(), result.lastMilestoneBeforeCompletion() + 1, result.milestones());
-                    cancelAll(r.getParent(), buildsToCancel);
+                    Job<?, ?> job = r.getParent();
+                    CompletionBatcher.onCompleted(job, r.getNumber(), result.lastMilestoneBeforeCompletion() + 1, result.milestones(),
+                            (toCancel, referenceBuildNumber) -> cancel(job, toCancel, referenceBuildNumber));
                 } else {
                     LOGGER.finest(() -> "Build " + r + " was not using milestones, nothing to cancel");
                 }
@@ -221,12 +498,20 @@ public class MilestoneStepExecution extends SynchronousStepExecution<Void> {
         public void onDeleted(Item item) {
             if (item instanceof Job<?,?> job) {
                 getStorage().onDeletedJob(job);
+                MilestoneStatistics.get().onDeleted(job);
+            }
+        }
+
+        @Override
+        public void onLocationChanged(Item item, String oldFullName, String newFullName) {
+            if (item instanceof Job<?,?>) {
+                MilestoneStatistics.get().onRenamed(oldFullName, newFullName);
             }
         }
     }
 
     /**
-     * Listens to pipeline resume, and let {@link MilestoneStorage} know the latest persisted milestone.
+     * Listens to pipeline resume, and let {@link MilestoneStorage} know the latest persisted milestone through {@link ResumedMilestones}.
      */
     @Extension
     public static final class FlowExecutionListenerImpl extends FlowExecutionListener {
@@ -237,9 +522,11 @@ public class MilestoneStepExecution extends SynchronousStepExecution<Void> {
                 var executable = execution.getOwner().getExecutable();
                 if (executable instanceof Run<?,?> run) {
                     LOGGER.fine(() -> "Executable " + executable + " is a run");
-                    var ordinalAction = getLatestOrdinalAction(execution.getCurrentHeads());
-                    MilestoneStorage milestoneStorage = getStorage();
-                    milestoneStorage.store(run, ordinalAction == null ? null : ordinalAction.ordinal);
+                    var latestOrdinal = getLatestOrdinal(run, execution.getCurrentHeads());
+                    ResumedMilestones.onResumed(run, latestOrdinal);
+                    if (latestOrdinal != null) {
+                        MilestoneStatistics.get().onResumed(run);
+                    }
                 } else {
                     LOGGER.fine(() -> "Executable " + executable + " is not a run");
                 }
@@ -256,7 +543,8 @@ public class MilestoneStepExecution extends SynchronousStepExecution<Void> {
      * @return the active implementation
      */
     @NonNull
-    private static MilestoneStorage getStorage() {
-        return ExtensionList.lookupFirst(MilestoneStorage.class);
+    static MilestoneStorage getStorage() {
+        MilestoneStorage storage = ExtensionList.lookupFirst(MilestoneStorage.class);
+        return TracingMilestoneStorage.FILE == null ? storage : TracingMilestoneStorage.wrap(storage);
     }
 }
@@ -7,7 +7,10 @@ import hudson.model.Executor;
 import hudson.model.Job;
 import hudson.model.Result;
 import hudson.model.Run;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.function.IntPredicate;
 import java.util.logging.Logger;
 
 /**
@@ -19,6 +22,8 @@ public interface MilestoneStorage extends ExtensionPoint {
 
     /**
      * Records passing a milestone.
+     * The milestone recorded for a run never goes back: storing a lower ordinal than the one already recorded,
+     * as parallel branches may do, keeps the higher one.
      * @param run The run passing the milestone.
      * @param ordinal the ordinal of the milestone gettting passed. May be {@code null} to record build starting.
      * @return The list of milestones for the job after storing the new one.
@@ -26,6 +31,24 @@ public interface MilestoneStorage extends ExtensionPoint {
     Map<Integer, Integer> store(@NonNull Run<?,?> run, @CheckForNull Integer ordinal);
 
 
+    /**
+     * Records the milestones of many runs of a job at once, as when resuming them after a restart.
+     * Equivalent to {@link #store(Run, Integer)} for each of them, but implementations can do it in one pass.
+     * @param job the job
+     * @param milestones the milestones to record, keyed by build number. Values may be {@code null} for builds which did not pass any milestone.
+     * @return The list of milestones for the job after storing the new ones.
+     */
+    default Map<Integer, Integer> bulkLoad(@NonNull Job<?, ?> job, @NonNull Map<Integer, Integer> milestones) {
+        Map<Integer, Integer> result = Map.of();
+        for (Map.Entry<Integer, Integer> entry : milestones.entrySet()) {
+            Run<?, ?> run = job.getBuildByNumber(entry.getKey());
+            if (run != null) {
+                result = store(run, entry.getValue());
+            }
+        }
+        return result;
+    }
+
     /**
      * Clears a {@link Run} from recorded milestones.
      * @param run The completed run.
@@ -34,6 +57,107 @@ public interface MilestoneStorage extends ExtensionPoint {
     @NonNull
     ClearResult clear(@NonNull Run<?,?> run);
 
+    /**
+     * Looks up the milestone passed by the newest running build of a job that passed any.
+     * May be called by other plugins: implementations answer without locking, from the latest state they published.
+     * @param job the job
+     * @return the ordinal of that milestone, or {@code null} if no running build of the job passed a milestone.
+     */
+    @CheckForNull
+    default Integer newestPassedOrdinal(@NonNull Job<?, ?> job) {
+        return null;
+    }
+
+    /**
+     * Tells whether a newer build of the same job already passed a milestone the given running build did not pass,
+     * so that the build is getting cancelled, or will be once it reaches its next milestone, under the default
+     * {@link SupersedeOlderBuildsPolicy cancellation policy}.
+     * Meant for other plugins to skip costly work in such builds: implementations answer in constant time without locking,
+     * so this may miss a build superseded very recently, but never reports a build which is not.
+     * @param run the running build
+     * @return {@code true} if known to be superseded
+     */
+    default boolean isSuperseded(@NonNull Run<?, ?> run) {
+        return false;
+    }
+
+    /**
+     * Looks up a build of the job newer than the given one which passed at least the given milestone,
+     * in constant time and without locking.
+     * Implementations may only track the newest build which passed a milestone, so this may miss some of them.
+     * @param job the job
+     * @param buildNumber the build getting checked
+     * @param ordinal the milestone the build is about to pass, {@code 0} for a build just starting.
+     * @return the number of such a newer build, or {@code 0} if none is known.
+     */
+    default int overtakenBy(@NonNull Job<?, ?> job, int buildNumber, int ordinal) {
+        return 0;
+    }
+
+    /**
+     * Counts the running builds of a job whose latest milestone is the given one.
+     * @param job the job
+     * @param ordinal the ordinal of the milestone
+     * @return that number of builds, or {@code -1} if this storage does not keep count,
+     * in which case callers count them in the milestones returned by {@link #store(Run, Integer)}.
+     */
+    default int countBuildsAt(@NonNull Job<?, ?> job, int ordinal) {
+        return -1;
+    }
+
+    /**
+     * Holds a run at a milestone for some time before letting it pass.
+     * If a newer run of the same job reaches or passes that milestone in the meantime, the waiting run gets {@link #cancel cancelled}
+     * and {@code proceed} is never called.
+     * Implementations must not block the calling thread while waiting.
+     * The default implementation does not wait.
+     * @param run the run waiting at the milestone.
+     * @param ordinal the ordinal of the milestone.
+     * @param delayMillis how long to wait.
+     * @param proceed called once the run may pass the milestone.
+     */
+    default void debounce(@NonNull Run<?, ?> run, int ordinal, long delayMillis, @NonNull Runnable proceed) {
+        proceed.run();
+    }
+
+    /**
+     * Records how long a run took to pass a milestone since it passed the previous one.
+     * @param run the run passing the milestone.
+     * @param ordinal the ordinal of the milestone getting passed.
+     * @param label the label of the milestone getting passed, if any.
+     * @param millis the time since the run passed its previous milestone, or since it started for its first one.
+     */
+    default void recordLatency(@NonNull Run<?, ?> run, int ordinal, @CheckForNull String label, long millis) {
+    }
+
+    /**
+     * @param job the job
+     * @return the latencies recorded for the job, keyed by milestone ordinal.
+     */
+    @NonNull
+    default Map<Integer, MilestoneLatency> getLatencies(@NonNull Job<?, ?> job) {
+        return Map.of();
+    }
+
+    /**
+     * @return the jobs for which milestones of running builds are currently recorded.
+     */
+    @NonNull
+    default Collection<Job<?, ?>> getTrackedJobs() {
+        return List.of();
+    }
+
+    /**
+     * Removes the milestones recorded for builds of a job which are no longer running,
+     * as when their completion was missed because of a crash or because they got deleted while running.
+     * @param job the job
+     * @param stale tells whether a build number recorded for the job belongs to a build no longer running.
+     * @return the number of builds removed
+     */
+    default int reclaim(@NonNull Job<?, ?> job, @NonNull IntPredicate stale) {
+        return 0;
+    }
+
     /**
      * Called when a job gets deleted, allowing the implementation to perform required cleanup.
      * @param job The job that was deleted.
@@ -62,7 +186,7 @@ public interface MilestoneStorage extends ExtensionPoint {
         LOGGER.fine(() -> "Cancelling " + run);
         Executor e = run.getExecutor();
         if (e != null) {
-            e.interrupt(Result.NOT_BUILT, new CancelledCause(externalizableId));
+            e.interrupt(Result.NOT_BUILT, CancelledCause.of(job, externalizableId));
         } else {
             LOGGER.warning(() -> "could not cancel an older flow because it has no assigned executor");
         }
@@ -0,0 +1,153 @@
+package org.jenkinsci.plugins.pipeline.milestone;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.model.Action;
+import hudson.model.Run;
+import java.util.Arrays;
+import java.util.List;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+/**
+ * Records the milestones a build passed, and whether it got cancelled, in {@code build.xml}.
+ * Exposed through the REST API of the build, under {@code milestones/api}, and among the actions of the build,
+ * so that its progress can be shown without loading its flow graph.
+ * Timestamps are in milliseconds since the epoch.
+ * <p>
+ * Entries are not saved as they get added, which would write {@code build.xml} at each milestone:
+ * they persist with the next save of the build, at the latest when it completes.
+ * Entries added since the last save of a build are lost if Jenkins stops meanwhile.
+ */
+@ExportedBean
+public final class MilestoneTimelineAction implements Action {
+    /**
+     * Held while adding the action to a build, rather than the build itself, which core locks too.
+     */
+    private static final Object LOCK = new Object();
+
+    /**
+     * Replaced on each change, as a build passes few milestones.
+     */
+    private volatile Entry[] entries = new Entry[0];
+
+    /**
+     * Called once a build passed a milestone.
+     */
+    static void onPassed(@NonNull Run<?, ?> run, int ordinal, @CheckForNull String label) {
+        of(run).append(new Entry(ordinal, label, System.currentTimeMillis(), Outcome.PASSED, null));
+    }
+
+    /**
+     * Called when a build gets cancelled, at the given milestone or at the last one it passed.
+     * @param externalizableId the externalizable id of the build causing the cancellation
+     */
+    static void onCancelled(@NonNull Run<?, ?> run, @CheckForNull Integer ordinal, @NonNull String externalizableId) {
+        var timeline = of(run);
+        synchronized (timeline) {
+            Entry last = timeline.entries.length == 0 ? null : timeline.entries[timeline.entries.length - 1];
+            if (last != null && last.outcome == Outcome.CANCELLED) {
+                return;
+            }
+            int at = ordinal != null ? ordinal : last != null ? last.ordinal : 0;
+            String label = last != null && last.ordinal == at ? last.label : null;
+            timeline.append(new Entry(at, label, System.currentTimeMillis(), Outcome.CANCELLED, externalizableId));
+        }
+    }
+
+    private static MilestoneTimelineAction of(Run<?, ?> run) {
+        var timeline = run.getAction(MilestoneTimelineAction.class);
+        if (timeline != null) {
+            return timeline;
+        }
+        synchronized (LOCK) {
+            timeline = run.getAction(MilestoneTimelineAction.class);
+            if (timeline == null) {
+                timeline = new MilestoneTimelineAction();
+                run.addAction(timeline);
+            }
+            return timeline;
+        }
+    }
+
+    private synchronized void append(Entry entry) {
+        var updated = Arrays.copyOf(entries, entries.length + 1);
+        updated[entries.length] = entry;
+        entries = updated;
+    }
+
+    @Exported
+    public List<Entry> getEntries() {
+        return List.of(entries);
+    }
+
+    @Override
+    public String getIconFileName() {
+        return null;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "Milestones";
+    }
+
+    @Override
+    public String getUrlName() {
+        return "milestones";
+    }
+
+    public enum Outcome {
+        PASSED,
+        CANCELLED
+    }
+
+    @ExportedBean(defaultVisibility = 2)
+    public static final class Entry {
+        private final int ordinal;
+        @CheckForNull
+        private final String label;
+        private final long timestamp;
+        private final Outcome outcome;
+        @CheckForNull
+        private final String cancelledBy;
+
+        Entry(int ordinal, @CheckForNull String label, long timestamp, @NonNull Outcome outcome, @CheckForNull String cancelledBy) {
+            this.ordinal = ordinal;
+            this.label = label;
+            this.timestamp = timestamp;
+            this.outcome = outcome;
+            this.cancelledBy = cancelledBy;
+        }
+
+        @Exported
+        public int getOrdinal() {
+            return ordinal;
+        }
+
+        @Exported
+        @CheckForNull
+        public String getLabel() {
+            return label;
+        }
+
+        @Exported
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        @Exported
+        @NonNull
+        public Outcome getOutcome() {
+            return outcome;
+        }
+
+        /**
+         * @return the externalizable id of the build which superseded this one, for {@link Outcome#CANCELLED}.
+         */
+        @Exported
+        @CheckForNull
+        public String getCancelledBy() {
+            return cancelledBy;
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package org.jenkinsci.plugins.pipeline.milestone;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compact binary trace of the calls reaching a {@link MilestoneStorage}, written by {@link TracingMilestoneStorage}
+ * and read by {@link MilestoneTraceReplay}.
+ * <p>
+ * The trace starts with a header (magic, version, start time in milliseconds since the epoch) followed by records.
+ * Each record is a type byte, the nanoseconds elapsed since the previous record, and variable-length integers:
+ * <ul>
+ *   <li>{@link #JOB}: job id, then the full name of the job, the first time the job shows up,</li>
+ *   <li>{@link #STORE}: job id, build number, ordinal plus one, {@code 0} for a build starting,</li>
+ *   <li>{@link #CLEAR}: job id, build number,</li>
+ *   <li>{@link #CANCEL}: job id, build number, number of the newer build, {@code 0} if unknown.</li>
+ * </ul>
+ * A file may hold several traces one after the other, as each session appends its own. They are read as one,
+ * with the jobs of each trace starting afresh and the time of its records shifted by the start time of the trace.
+ */
+final class MilestoneTrace {
+    static final int MAGIC = 0x4d54524b;
+    static final int VERSION = 1;
+
+    static final byte JOB = 0;
+    static final byte STORE = 1;
+    static final byte CLEAR = 2;
+    static final byte CANCEL = 3;
+
+    private MilestoneTrace() {}
+
+    /**
+     * A record of the trace.
+     * @param type the type of record
+     * @param nanos nanoseconds since the beginning of the trace
+     * @param job the full name of the job
+     * @param build the build number
+     * @param value the ordinal for {@link #STORE}, {@code null} for a build starting, or the newer build for {@link #CANCEL}
+     */
+    record Event(byte type, long nanos, @NonNull String job, int build, @CheckForNull Integer value) {}
+
+    /**
+     * Appends records to a trace. Thread safe.
+     */
+    static final class Writer implements Closeable {
+        private final DataOutputStream out;
+        private final Map<String, Integer> jobs = new HashMap<>();
+        private final long start = System.nanoTime();
+        private long last;
+
+        Writer(@NonNull OutputStream out) throws IOException {
+            this.out = new DataOutputStream(new BufferedOutputStream(out));
+            this.out.writeInt(MAGIC);
+            this.out.writeInt(VERSION);
+            this.out.writeLong(System.currentTimeMillis());
+        }
+
+        synchronized void store(@NonNull String job, int build, @CheckForNull Integer ordinal) throws IOException {
+            int id = job(job);
+            header(STORE);
+            writeVarLong(id);
+            writeVarLong(build);
+            writeVarLong(ordinal == null ? 0 : ordinal + 1L);
+        }
+
+        synchronized void clear(@NonNull String job, int build) throws IOException {
+            int id = job(job);
+            header(CLEAR);
+            writeVarLong(id);
+            writeVarLong(build);
+        }
+
+        synchronized void cancel(@NonNull String job, int build, int newerBuild) throws IOException {
+            int id = job(job);
+            header(CANCEL);
+            writeVarLong(id);
+            writeVarLong(build);
+            writeVarLong(newerBuild);
+        }
+
+        synchronized void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            out.close();
+        }
+
+        private int job(String job) throws IOException {
+            Integer id = jobs.get(job);
+            if (id == null) {
+                id = jobs.size();
+                jobs.put(job, id);
+                header(JOB);
+                writeVarLong(id);
+                out.writeUTF(job);
+            }
+            return id;
+        }
+
+        private void header(byte type) throws IOException {
+            long now = System.nanoTime() - start;
+            out.writeByte(type);
+            writeVarLong(Math.max(0, now - last));
+            last = Math.max(last, now);
+        }
+
+        private void writeVarLong(long value) throws IOException {
+            while ((value & ~0x7FL) != 0) {
+                out.writeByte((int) (value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            out.writeByte((int) value);
+        }
+    }
+
+    /**
+     * Reads the records of a trace in order.
+     */
+    static final class Reader implements Closeable {
+        private final DataInputStream in;
+        private final Map<Integer, String> jobs = new HashMap<>();
+        private final long startMillis;
+        private long nanos;
+
+        Reader(@NonNull InputStream in) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(in));
+            if (this.in.readInt() != MAGIC) {
+                throw new IOException("Not a milestone trace");
+            }
+            int version = this.in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported milestone trace version " + version);
+            }
+            this.startMillis = this.in.readLong();
+        }
+
+        long getStartMillis() {
+            return startMillis;
+        }
+
+        /**
+         * @return the next record, or {@code null} at the end of the trace.
+         */
+        @CheckForNull
+        Event next() throws IOException {
+            while (true) {
+                int type;
+                try {
+                    type = in.readByte();
+                } catch (EOFException x) {
+                    return null;
+                }
+                if (type == MAGIC >>> 24) {
+                    appended();
+                    continue;
+                }
+                nanos += readVarLong();
+                switch (type) {
+                    case JOB -> jobs.put((int) readVarLong(), in.readUTF());
+                    case STORE -> {
+                        String job = job();
+                        int build = (int) readVarLong();
+                        long ordinal = readVarLong();
+                        return new Event(STORE, nanos, job, build, ordinal == 0 ? null : (int) (ordinal - 1));
+                    }
+                    case CLEAR -> {
+                        return new Event(CLEAR, nanos, job(), (int) readVarLong(), null);
+                    }
+                    case CANCEL -> {
+                        String job = job();
+                        int build = (int) readVarLong();
+                        return new Event(CANCEL, nanos, job, build, (int) readVarLong());
+                    }
+                    default -> throw new IOException("Unknown record type " + type);
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+
+        /**
+         * Reads the header of a trace appended to the previous one, after its first byte.
+         */
+        private void appended() throws IOException {
+            if ((in.readUnsignedByte() << 16 | in.readUnsignedShort()) != (MAGIC & 0xFFFFFF)) {
+                throw new IOException("Not a milestone trace");
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported milestone trace version " + version);
+            }
+            nanos = Math.max(nanos, TimeUnit.MILLISECONDS.toNanos(in.readLong() - startMillis));
+            jobs.clear();
+        }
+
+        private String job() throws IOException {
+            int id = (int) readVarLong();
+            String job = jobs.get(id);
+            if (job == null) {
+                throw new IOException("Unknown job id " + id);
+            }
+            return job;
+        }
+
+        private long readVarLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = in.readUnsignedByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed variable-length integer");
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package org.jenkinsci.plugins.pipeline.milestone;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.model.Job;
+import hudson.model.Run;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.LockSupport;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Plays a {@link MilestoneTrace} recorded by {@link TracingMilestoneStorage} back against a {@link MilestoneStorage},
+ * without Jenkins running, to compare storage implementations on a real workload.
+ * <p>
+ * Each recorded {@code store} and {@code clear} is replayed on stub jobs and runs,
+ * and the builds to cancel are selected from the returned milestones as {@link MilestoneStepExecution#getBuildsToCancel} does.
+ * Builds are not actually cancelled: the selected ones are compared with the cancellations recorded in the trace.
+ * <p>
+ * Usage: {@code java -cp <plugin and Jenkins core classes> org.jenkinsci.plugins.pipeline.milestone.MilestoneTraceReplay
+ * [--storage=<class>] [--max-speed] [--decisions] <trace>}.
+ * The storage defaults to {@link DefaultMilestoneStorage} and needs a public no-argument constructor not relying on a Jenkins instance.
+ * Calls are replayed at their recorded pace unless {@code --max-speed} is given.
+ */
+@Restricted(NoExternalUse.class)
+public final class MilestoneTraceReplay {
+    private final MilestoneStorage storage;
+    private final boolean maxSpeed;
+    @CheckForNull
+    private final PrintStream decisions;
+
+    private final Map<String, ReplayJob> jobs = new HashMap<>();
+    private final LatencyHistogram storeNanos = LatencyHistogram.forNanos();
+    private final LatencyHistogram clearNanos = LatencyHistogram.forNanos();
+    private final LatencyHistogram selectNanos = LatencyHistogram.forNanos();
+    private final Set<String> decided = new HashSet<>();
+    private final Set<String> recorded = new HashSet<>();
+    private long elapsedNanos;
+
+    MilestoneTraceReplay(@NonNull MilestoneStorage storage, boolean maxSpeed, @CheckForNull PrintStream decisions) {
+        this.storage = storage;
+        this.maxSpeed = maxSpeed;
+        this.decisions = decisions;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String trace = null;
+        String storageClass = DefaultMilestoneStorage.class.getName();
+        boolean maxSpeed = false;
+        boolean decisions = false;
+        for (String arg : args) {
+            if (arg.startsWith("--storage=")) {
+                storageClass = arg.substring("--storage=".length());
+            } else if (arg.equals("--max-speed")) {
+                maxSpeed = true;
+            } else if (arg.equals("--decisions")) {
+                decisions = true;
+            } else if (!arg.startsWith("--") && trace == null) {
+                trace = arg;
+            } else {
+                trace = null;
+                break;
+            }
+        }
+        if (trace == null) {
+            System.err.println("Usage: " + MilestoneTraceReplay.class.getName() + " [--storage=<class>] [--max-speed] [--decisions] <trace>");
+            System.exit(2);
+            return;
+        }
+        var storage = (MilestoneStorage) Class.forName(storageClass).getDeclaredConstructor().newInstance();
+        var replay = new MilestoneTraceReplay(storage, maxSpeed, decisions ? System.out : null);
+        try (InputStream in = new FileInputStream(trace)) {
+            replay.replay(in);
+        }
+        replay.report(System.out);
+    }
+
+    void replay(@NonNull InputStream in) throws IOException {
+        try (var reader = new MilestoneTrace.Reader(in)) {
+            long start = System.nanoTime();
+            MilestoneTrace.Event event;
+            while ((event = reader.next()) != null) {
+                if (!maxSpeed) {
+                    long wait = start + event.nanos() - System.nanoTime();
+                    if (wait > 0) {
+                        LockSupport.parkNanos(wait);
+                    }
+                }
+                ReplayJob job = jobs.computeIfAbsent(event.job(), ReplayJob::new);
+                switch (event.type()) {
+                    case MilestoneTrace.STORE -> store(job, event.build(), event.value());
+                    case MilestoneTrace.CLEAR -> clear(job, event.build());
+                    case MilestoneTrace.CANCEL -> recorded.add(job.getFullName() + "#" + event.build());
+                    default -> throw new IllegalStateException();
+                }
+            }
+            elapsedNanos = System.nanoTime() - start;
+        }
+    }
+
+    private void store(ReplayJob job, int build, @CheckForNull Integer ordinal) {
+        ReplayRun run = job.runs.computeIfAbsent(build, n -> new ReplayRun(job, n));
+        long start = System.nanoTime();
+        var milestones = storage.store(run, ordinal);
+        storeNanos.record(System.nanoTime() - start);
+        if (ordinal != null) {
+            select(job, build, ordinal, milestones);
+        }
+    }
+
+    private void clear(ReplayJob job, int build) {
+        ReplayRun run = job.runs.remove(build);
+        if (run == null) {
+            run = new ReplayRun(job, build);
+        }
+        long start = System.nanoTime();
+        var result = storage.clear(run);
+        clearNanos.record(System.nanoTime() - start);
+        if (result.lastMilestoneBeforeCompletion() != null) {
+            select(job, build, result.lastMilestoneBeforeCompletion() + 1, result.milestones());
+        }
+    }
+
+    private void select(ReplayJob job, int build, int ordinal, Map<Integer, Integer> milestones) {
+        long start = System.nanoTime();
+        var victims = MilestoneStepExecution.getBuildsToCancel(build, ordinal, milestones);
+        selectNanos.record(System.nanoTime() - start);
+        for (Integer victim : victims.keySet()) {
+            if (decided.add(job.getFullName() + "#" + victim) && decisions != null) {
+                decisions.println(job.getFullName() + "#" + victim + " superseded by #" + build + " at milestone " + ordinal);
+            }
+        }
+    }
+
+    void report(@NonNull PrintStream out) {
+        long calls = storeNanos.getCount() + clearNanos.getCount();
+        double seconds = elapsedNanos / 1e9;
+        out.printf("Replayed %d calls in %.3f s: %.0f calls/s%s%n", calls, seconds, seconds > 0 ? calls / seconds : 0.0,
+                maxSpeed ? "" : " (recorded pace)");
+        report(out, "store", storeNanos);
+        report(out, "clear", clearNanos);
+        report(out, "getBuildsToCancel", selectNanos);
+        long both = decided.stream().filter(recorded::contains).count();
+        out.printf("Cancellations: %d selected, %d recorded, %d in both%n", decided.size(), recorded.size(), both);
+    }
+
+    private static void report(PrintStream out, String name, LatencyHistogram histogram) {
+        out.printf("%-18s count=%d p50=%.1fµs p99=%.1fµs p99.9=%.1fµs max=%.1fµs%n", name, histogram.getCount(),
+                histogram.getValueAtPercentile(50) / 1e3, histogram.getValueAtPercentile(99) / 1e3,
+                histogram.getValueAtPercentile(99.9) / 1e3, histogram.getMax() / 1e3);
+    }
+
+    /**
+     * Job known only by its full name, holding the runs being replayed.
+     */
+    private static final class ReplayJob extends Job<ReplayJob, ReplayRun> {
+        private final String fullName;
+        final SortedMap<Integer, ReplayRun> runs = new TreeMap<>();
+
+        ReplayJob(String fullName) {
+            super(null, fullName.substring(fullName.lastIndexOf('/') + 1));
+            this.fullName = fullName;
+        }
+
+        @Override
+        public String getFullName() {
+            return fullName;
+        }
+
+        @Override
+        public boolean isBuildable() {
+            return false;
+        }
+
+        @Override
+        protected SortedMap<Integer, ReplayRun> _getRuns() {
+            return runs;
+        }
+
+        @Override
+        protected void removeRun(ReplayRun run) {
+            runs.remove(run.getNumber());
+        }
+
+        @Override
+        public String toString() {
+            return fullName;
+        }
+    }
+
+    private static final class ReplayRun extends Run<ReplayJob, ReplayRun> {
+        private final int number;
+
+        ReplayRun(ReplayJob job, int number) {
+            super(job, 0L);
+            this.number = number;
+        }
+
+        @Override
+        public int getNumber() {
+            return number;
+        }
+
+        @Override
+        public String toString() {
+            return getParent().getFullName() + "#" + number;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package org.jenkinsci.plugins.pipeline.milestone;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.model.Descriptor;
+import java.util.Map;
+import java.util.NavigableMap;
+import org.jenkinsci.Symbol;
+import org.kohsuke.stapler.DataBoundConstructor;
+
+/**
+ * Supersedes older builds like {@link SupersedeOlderBuildsPolicy}, except builds which passed the given milestone, which are never cancelled.
+ */
+public class ProtectFromOrdinalPolicy extends MilestoneCancellationPolicy {
+
+    private final int ordinal;
+
+    @DataBoundConstructor
+    public ProtectFromOrdinalPolicy(int ordinal) {
+        this.ordinal = ordinal;
+    }
+
+    public int getOrdinal() {
+        return ordinal;
+    }
+
+    private boolean isProtected(@CheckForNull Integer milestone) {
+        return milestone != null && milestone >= ordinal;
+    }
+
+    @Override
+    public void selectBuildsToCancel(int buildNumber, @CheckForNull Integer passedOrdinal, @NonNull NavigableMap<Integer, Integer> milestones, @NonNull Cancellation cancellation) {
+        for (Map.Entry<Integer, Integer> older : milestones.headMap(buildNumber, false).entrySet()) {
+            if (!isProtected(older.getValue()) && isBehind(older.getValue(), passedOrdinal)) {
+                cancellation.cancel(older.getKey(), buildNumber);
+            }
+        }
+        if (!isProtected(passedOrdinal)) {
+            cancelIfOvertaken(buildNumber, passedOrdinal, milestones, cancellation);
+        }
+    }
+
+    @Extension
+    @Symbol("protectFromOrdinal")
+    public static final class DescriptorImpl extends Descriptor<MilestoneCancellationPolicy> {
+        @NonNull
+        @Override
+        public String getDisplayName() {
+            return "Never cancel builds past a milestone";
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package org.jenkinsci.plugins.pipeline.milestone;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.model.Job;
+import hudson.model.Run;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Logger;
+import jenkins.util.Timer;
+import org.jenkinsci.plugins.workflow.flow.FlowExecutionList;
+
+/**
+ * Rebuilds the milestones of resumed builds once all of them resumed.
+ * <p>
+ * Milestones of resumed builds are collected per job and handed over to {@link MilestoneStorage#bulkLoad} in one call per job
+ * once {@link FlowExecutionList#isResumptionComplete()}.
+ * Until then, the milestones of a job are incomplete, so neither builds passing a milestone nor {@link CompletionBatcher completed builds}
+ * cancel anything: their cancellations are evaluated once the milestones of their job are loaded.
+ */
+final class ResumedMilestones {
+    private static final Logger LOGGER = Logger.getLogger(ResumedMilestones.class.getName());
+    private static final long POLL_MILLIS = 100;
+
+    private static final Map<Job<?, ?>, Pending> PENDING = new ConcurrentHashMap<>();
+    private static final AtomicBoolean SCHEDULED = new AtomicBoolean();
+
+    private ResumedMilestones() {}
+
+    static void onResumed(@NonNull Run<?, ?> run, @CheckForNull Integer ordinal) {
+        PENDING.compute(run.getParent(), (job, pending) -> {
+            if (pending == null) {
+                pending = new Pending();
+            }
+            pending.milestones.put(run.getNumber(), ordinal);
+            return pending;
+        });
+        schedule();
+    }
+
+    /**
+     * Defers the cancellations caused by a build passing a milestone if the milestones of its job are not loaded yet.
+     * @return {@code true} if deferred
+     */
+    static boolean deferCancellation(@NonNull Run<?, ?> run, int ordinal) {
+        if (PENDING.isEmpty()) {
+            return false;
+        }
+        var deferred = new AtomicBoolean();
+        PENDING.computeIfPresent(run.getParent(), (job, pending) -> {
+            pending.passed.merge(run.getNumber(), ordinal, Math::max);
+            deferred.set(true);
+            return pending;
+        });
+        return deferred.get();
+    }
+
+    static boolean isPending(@NonNull Job<?, ?> job) {
+        return !PENDING.isEmpty() && PENDING.containsKey(job);
+    }
+
+    static void onCompleted(@NonNull Run<?, ?> run) {
+        if (PENDING.isEmpty()) {
+            return;
+        }
+        PENDING.computeIfPresent(run.getParent(), (job, pending) -> {
+            pending.milestones.remove(run.getNumber());
+            pending.passed.remove(run.getNumber());
+            return pending;
+        });
+    }
+
+    private static void schedule() {
+        if (SCHEDULED.compareAndSet(false, true)) {
+            Timer.get().schedule(ResumedMilestones::load, POLL_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static void load() {
+        SCHEDULED.set(false);
+        if (!FlowExecutionList.get().isResumptionComplete()) {
+            schedule();
+            return;
+        }
+        MilestoneStorage storage = MilestoneStepExecution.getStorage();
+        for (Job<?, ?> job : PENDING.keySet()) {
+            var passed = new AtomicReference<Map<Integer, Integer>>();
+            var milestones = new AtomicReference<Map<Integer, Integer>>();
+            PENDING.computeIfPresent(job, (j, pending) -> {
+                LOGGER.fine(() -> "Loading milestones of " + pending.milestones.size() + " resumed builds of " + j.getFullName());
+                milestones.set(storage.bulkLoad(j, pending.milestones));
+                passed.set(pending.passed);
+                return null;
+            });
+            if (passed.get() != null) {
+                CompletionBatcher.flush(job, milestones.get());
+                passed.get().forEach((number, ordinal) -> {
+                    Run<?, ?> run = job.getBuildByNumber(number);
+                    if (run != null && run.isBuilding()) {
+                        MilestoneStepExecution.cancelAll(job, number, ordinal, storage.store(run, ordinal));
+                    }
+                });
+            }
+        }
+    }
+
+    private static final class Pending {
+        final Map<Integer, Integer> milestones = new TreeMap<>();
+        final Map<Integer, Integer> passed = new HashMap<>();
+    }
+}
@@ -0,0 +1,139 @@
+package org.jenkinsci.plugins.pipeline.milestone;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.model.Run;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.util.ContextResettingExecutorService;
+import org.jenkinsci.plugins.workflow.actions.ArgumentsAction;
+import org.jenkinsci.plugins.workflow.actions.LabelAction;
+import org.jenkinsci.plugins.workflow.actions.TimingAction;
+import org.jenkinsci.plugins.workflow.flow.GraphListener;
+import org.jenkinsci.plugins.workflow.graph.BlockStartNode;
+import org.jenkinsci.plugins.workflow.graph.FlowNode;
+import org.jenkinsci.plugins.workflow.graph.StepNode;
+import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Passes a milestone at the start of each stage of builds of jobs with {@link MilestoneJobProperty#isStageMilestones()}.
+ * <p>
+ * Works like a {@code milestone()} step at the start of each stage, with the same ordinals and cancellations,
+ * without adding a step node to the flow graph nor scanning it: the ordinal is recorded on the stage node itself,
+ * and the latest ordinal of each running build is kept in memory.
+ * Stages inside parallel branches are skipped, as their order is not deterministic.
+ * <p>
+ * Ordinals are assigned on the CPS VM thread as each stage starts, so that they follow the order of the stages.
+ * Storing the milestone and cancelling older builds is then done on a single background thread, in the same order,
+ * so the stage body does not wait for it: unlike the step, a build overtaken at a stage milestone gets cancelled
+ * shortly after its stage started rather than before its body runs.
+ */
+@Extension
+@Restricted(NoExternalUse.class)
+public class StageMilestones implements GraphListener.Synchronous {
+    private static final Logger LOGGER = Logger.getLogger(StageMilestones.class.getName());
+
+    /**
+     * Latest milestone passed by running builds which passed a stage milestone.
+     */
+    private static final Map<Run<?, ?>, Passed> LATEST = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private static final ExecutorService PASSING = new ContextResettingExecutorService(Executors.newSingleThreadExecutor(
+            new NamingThreadFactory(new DaemonThreadFactory(), "StageMilestones")));
+
+    @Override
+    public void onNewHead(FlowNode node) {
+        if (!isStageStart(node)) {
+            return;
+        }
+        Run<?, ?> run;
+        try {
+            run = node.getExecution().getOwner().getExecutable() instanceof Run<?, ?> r ? r : null;
+        } catch (IOException x) {
+            LOGGER.log(Level.WARNING, x, () -> "Unable to look up the build of " + node);
+            return;
+        }
+        if (run == null) {
+            return;
+        }
+        var property = run.getParent().getProperty(MilestoneJobProperty.class);
+        if (property == null || !property.isStageMilestones() || MilestoneStepExecution.getEnclosingBranches(node).size() > 1) {
+            return;
+        }
+        Passed scanned = null;
+        if (!LATEST.containsKey(run)) {
+            // Only after a restart or when the build passed a milestone step first, scanning without holding the lock
+            FlowNode previousNode = MilestoneStepExecution.findPreviousOrdinalNode(run, node);
+            if (previousNode != null) {
+                scanned = new Passed(previousNode.getAction(MilestoneStepExecution.OrdinalAction.class).ordinal, TimingAction.getStartTime(previousNode));
+            }
+        }
+        Passed previous;
+        int ordinal;
+        synchronized (LATEST) {
+            previous = LATEST.getOrDefault(run, scanned);
+            ordinal = previous == null ? 0 : previous.ordinal() + 1;
+            LATEST.put(run, new Passed(ordinal, System.currentTimeMillis()));
+        }
+        long since = previous == null ? run.getStartTimeInMillis() : previous.timestamp();
+        node.addAction(new MilestoneStepExecution.OrdinalAction(ordinal));
+        var label = node.getPersistentAction(LabelAction.class);
+        String displayName = node.getDisplayName();
+        PASSING.submit(() -> {
+            LOGGER.fine(() -> "build " + run + " passing milestone " + ordinal + " at the start of " + displayName);
+            try {
+                MilestoneStepExecution.passMilestone(run, ordinal, label == null ? null : label.getDisplayName(), since);
+            } catch (RuntimeException x) {
+                LOGGER.log(Level.WARNING, x, () -> "Unable to pass milestone " + ordinal + " at the start of " + displayName + " in " + run);
+            }
+        });
+    }
+
+    /**
+     * @return {@code true} for the start node of a {@code stage} step, but not the start of its body
+     */
+    private static boolean isStageStart(FlowNode node) {
+        if (!(node instanceof BlockStartNode) || !isStage(node)) {
+            return false;
+        }
+        // the body starts right after the step, and unlike the step has no arguments
+        return node.getPersistentAction(ArgumentsAction.class) != null
+                || node.getParents().stream().noneMatch(parent -> parent instanceof BlockStartNode && isStage(parent));
+    }
+
+    private static boolean isStage(FlowNode node) {
+        if (node instanceof StepNode stepNode) {
+            StepDescriptor descriptor = stepNode.getDescriptor();
+            return descriptor != null && "stage".equals(descriptor.getFunctionName());
+        }
+        return false;
+    }
+
+    /**
+     * Keeps track of milestones passed by builds through steps, once they passed a stage milestone.
+     */
+    static void onPassed(@NonNull Run<?, ?> run, int ordinal) {
+        if (LATEST.isEmpty()) {
+            return;
+        }
+        LATEST.computeIfPresent(run, (r, passed) -> passed.ordinal() >= ordinal ? passed : new Passed(ordinal, System.currentTimeMillis()));
+    }
+
+    static void onCompleted(@NonNull Run<?, ?> run) {
+        if (!LATEST.isEmpty()) {
+            LATEST.remove(run);
+        }
+    }
+
+    private record Passed(int ordinal, long timestamp) {}
+}
@@ -0,0 +1,42 @@
+package org.jenkinsci.plugins.pipeline.milestone;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.model.Descriptor;
+import java.util.Map;
+import java.util.NavigableMap;
+import org.jenkinsci.Symbol;
+import org.kohsuke.stapler.DataBoundConstructor;
+
+/**
+ * The default policy, cancelling every older build which did not pass the milestone, as documented on {@link MilestoneStep}.
+ */
+public class SupersedeOlderBuildsPolicy extends MilestoneCancellationPolicy {
+
+    static final SupersedeOlderBuildsPolicy INSTANCE = new SupersedeOlderBuildsPolicy();
+
+    @DataBoundConstructor
+    public SupersedeOlderBuildsPolicy() {
+    }
+
+    @Override
+    public void selectBuildsToCancel(int buildNumber, @CheckForNull Integer ordinal, @NonNull NavigableMap<Integer, Integer> milestones, @NonNull Cancellation cancellation) {
+        for (Map.Entry<Integer, Integer> older : milestones.headMap(buildNumber, false).entrySet()) {
+            if (isBehind(older.getValue(), ordinal)) {
+                cancellation.cancel(older.getKey(), buildNumber);
+            }
+        }
+        cancelIfOvertaken(buildNumber, ordinal, milestones, cancellation);
+    }
+
+    @Extension(ordinal = 100)
+    @Symbol("supersedeOlderBuilds")
+    public static final class DescriptorImpl extends Descriptor<MilestoneCancellationPolicy> {
+        @NonNull
+        @Override
+        public String getDisplayName() {
+            return "Supersede all older builds";
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package org.jenkinsci.plugins.pipeline.milestone;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.model.Descriptor;
+import java.util.NavigableMap;
+import org.jenkinsci.Symbol;
+import org.kohsuke.stapler.DataBoundConstructor;
+
+/**
+ * Only cancels the running build immediately preceding the one passing the milestone.
+ */
+public class SupersedePreviousBuildPolicy extends MilestoneCancellationPolicy {
+
+    @DataBoundConstructor
+    public SupersedePreviousBuildPolicy() {
+    }
+
+    @Override
+    public void selectBuildsToCancel(int buildNumber, @CheckForNull Integer ordinal, @NonNull NavigableMap<Integer, Integer> milestones, @NonNull Cancellation cancellation) {
+        var previous = milestones.lowerEntry(buildNumber);
+        if (previous != null && isBehind(previous.getValue(), ordinal)) {
+            cancellation.cancel(previous.getKey(), buildNumber);
+        }
+        cancelIfOvertaken(buildNumber, ordinal, milestones, cancellation);
+    }
+
+    @Extension
+    @Symbol("supersedePreviousBuild")
+    public static final class DescriptorImpl extends Descriptor<MilestoneCancellationPolicy> {
+        @NonNull
+        @Override
+        public String getDisplayName() {
+            return "Supersede the previous build only";
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package org.jenkinsci.plugins.pipeline.milestone;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import hudson.Extension;
+import hudson.model.Job;
+import hudson.model.Result;
+import hudson.model.Run;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.model.CauseOfInterruption;
+import jenkins.util.SystemProperties;
+import org.jenkinsci.plugins.workflow.flow.StepListener;
+import org.jenkinsci.plugins.workflow.steps.FlowInterruptedException;
+import org.jenkinsci.plugins.workflow.steps.Step;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Optionally fails costly steps of builds already superseded at a milestone before they start,
+ * rather than letting them acquire an agent or a lock only to get interrupted.
+ * <p>
+ * Relies on {@link MilestoneStorage#isSuperseded}, so checking a step takes no lock.
+ * Only steps listed in {@link #STEPS} are checked, and only in jobs using {@link SupersedeOlderBuildsPolicy}.
+ */
+@Extension
+@Restricted(NoExternalUse.class)
+public class SupersededStepListener implements StepListener {
+    private static final Logger LOGGER = Logger.getLogger(SupersededStepListener.class.getName());
+
+    @SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "for script console")
+    public static /* non-final for script console */ boolean ENABLED = SystemProperties.getBoolean(SupersededStepListener.class.getName() + ".enabled");
+
+    /**
+     * Comma-separated function names of the steps to check.
+     */
+    @SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "for script console")
+    public static /* non-final for script console */ String STEPS = SystemProperties.getString(SupersededStepListener.class.getName() + ".steps", "node,lock,build,archiveArtifacts,stash");
+
+    private volatile StepNames steps = new StepNames("", Set.of());
+
+    @Override
+    public void notifyOfNewStep(@NonNull Step step, @NonNull StepContext context) {
+        if (!ENABLED || !steps().contains(step.getDescriptor().getFunctionName())) {
+            return;
+        }
+        Run<?, ?> run;
+        try {
+            run = context.get(Run.class);
+        } catch (IOException | InterruptedException x) {
+            LOGGER.log(Level.FINE, "Unable to look up the build of " + context, x);
+            return;
+        }
+        if (run == null) {
+            return;
+        }
+        MilestoneStorage storage = MilestoneStepExecution.getStorage();
+        if (!storage.isSuperseded(run)) {
+            return;
+        }
+        Job<?, ?> job = run.getParent();
+        if (!(MilestoneCancellationPolicy.forJob(job) instanceof SupersedeOlderBuildsPolicy)) {
+            return;
+        }
+        int newer = storage.overtakenBy(job, run.getNumber(), 0);
+        if (newer == 0) {
+            return;
+        }
+        LOGGER.fine(() -> "Not starting " + step.getDescriptor().getFunctionName() + " in " + run + ", superseded by #" + newer);
+        Run<?, ?> newerRun = job.getBuildByNumber(newer);
+        CauseOfInterruption cause = newerRun == null ? CancelledCause.of(job, job.getFullName() + "#" + newer) : CancelledCause.of(job, newerRun);
+        context.onFailure(new FlowInterruptedException(Result.NOT_BUILT, true, cause));
+    }
+
+    private Set<String> steps() {
+        String current = STEPS;
+        StepNames parsed = steps;
+        if (!parsed.source().equals(current)) {
+            parsed = new StepNames(current, Set.copyOf(Arrays.asList(current.trim().split("\\s*,\\s*"))));
+            steps = parsed;
+        }
+        return parsed.names();
+    }
+
+    private record StepNames(String source, Set<String> names) {}
+}
@@ -0,0 +1,224 @@
+package org.jenkinsci.plugins.pipeline.milestone;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.init.Terminator;
+import hudson.model.Job;
+import hudson.model.Run;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntPredicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.util.SystemProperties;
+import jenkins.util.Timer;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Records the calls reaching the active {@link MilestoneStorage} into a {@link MilestoneTrace},
+ * for {@link MilestoneTraceReplay} to play them back against any implementation offline.
+ * <p>
+ * Calls for a job are recorded and forwarded while holding the lock of the job, so that the trace keeps their order.
+ * Each session appends its own trace to the file.
+ * <p>
+ * Only used when the {@code org.jenkinsci.plugins.pipeline.milestone.TracingMilestoneStorage.file} system property
+ * names the file to write the trace to.
+ */
+@Restricted(NoExternalUse.class)
+public final class TracingMilestoneStorage implements MilestoneStorage {
+    private static final Logger LOGGER = Logger.getLogger(TracingMilestoneStorage.class.getName());
+
+    @CheckForNull
+    static final String FILE = SystemProperties.getString(TracingMilestoneStorage.class.getName() + ".file");
+    private static final long FLUSH_SECONDS = 1;
+    private static final int LOCK_STRIPES = 64;
+    private static final Object[] LOCKS = new Object[LOCK_STRIPES];
+
+    static {
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            LOCKS[i] = new Object();
+        }
+    }
+
+    private static MilestoneTrace.Writer writer;
+    private static boolean closed;
+    private static volatile TracingMilestoneStorage current;
+
+    private final MilestoneStorage delegate;
+
+    private TracingMilestoneStorage(MilestoneStorage delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * @return a storage tracing the calls to the given one.
+     */
+    @NonNull
+    static MilestoneStorage wrap(@NonNull MilestoneStorage delegate) {
+        TracingMilestoneStorage tracing = current;
+        if (tracing == null || tracing.delegate != delegate) {
+            tracing = new TracingMilestoneStorage(delegate);
+            current = tracing;
+        }
+        return tracing;
+    }
+
+    @Override
+    public Map<Integer, Integer> store(@NonNull Run<?, ?> run, @CheckForNull Integer ordinal) {
+        String name = run.getParent().getFullName();
+        synchronized (lockFor(name)) {
+            trace(w -> w.store(name, run.getNumber(), ordinal));
+            return delegate.store(run, ordinal);
+        }
+    }
+
+    @Override
+    public Map<Integer, Integer> bulkLoad(@NonNull Job<?, ?> job, @NonNull Map<Integer, Integer> milestones) {
+        String name = job.getFullName();
+        synchronized (lockFor(name)) {
+            trace(w -> {
+                for (Map.Entry<Integer, Integer> entry : milestones.entrySet()) {
+                    w.store(name, entry.getKey(), entry.getValue());
+                }
+            });
+            return delegate.bulkLoad(job, milestones);
+        }
+    }
+
+    @NonNull
+    @Override
+    public ClearResult clear(@NonNull Run<?, ?> run) {
+        String name = run.getParent().getFullName();
+        synchronized (lockFor(name)) {
+            trace(w -> w.clear(name, run.getNumber()));
+            return delegate.clear(run);
+        }
+    }
+
+    @Override
+    public void cancel(Job<?, ?> job, int buildNumber, @NonNull String externalizableId) {
+        String name = job.getFullName();
+        synchronized (lockFor(name)) {
+            trace(w -> w.cancel(name, buildNumber, newerBuild(externalizableId)));
+        }
+        delegate.cancel(job, buildNumber, externalizableId);
+    }
+
+    @CheckForNull
+    @Override
+    public Integer newestPassedOrdinal(@NonNull Job<?, ?> job) {
+        return delegate.newestPassedOrdinal(job);
+    }
+
+    @Override
+    public boolean isSuperseded(@NonNull Run<?, ?> run) {
+        return delegate.isSuperseded(run);
+    }
+
+    @Override
+    public int overtakenBy(@NonNull Job<?, ?> job, int buildNumber, int ordinal) {
+        return delegate.overtakenBy(job, buildNumber, ordinal);
+    }
+
+    @Override
+    public int countBuildsAt(@NonNull Job<?, ?> job, int ordinal) {
+        return delegate.countBuildsAt(job, ordinal);
+    }
+
+    @Override
+    public void debounce(@NonNull Run<?, ?> run, int ordinal, long delayMillis, @NonNull Runnable proceed) {
+        delegate.debounce(run, ordinal, delayMillis, proceed);
+    }
+
+    @Override
+    public void recordLatency(@NonNull Run<?, ?> run, int ordinal, @CheckForNull String label, long millis) {
+        delegate.recordLatency(run, ordinal, label, millis);
+    }
+
+    @NonNull
+    @Override
+    public Map<Integer, MilestoneLatency> getLatencies(@NonNull Job<?, ?> job) {
+        return delegate.getLatencies(job);
+    }
+
+    @NonNull
+    @Override
+    public Collection<Job<?, ?>> getTrackedJobs() {
+        return delegate.getTrackedJobs();
+    }
+
+    @Override
+    public int reclaim(@NonNull Job<?, ?> job, @NonNull IntPredicate stale) {
+        String name = job.getFullName();
+        synchronized (lockFor(name)) {
+            return delegate.reclaim(job, number -> {
+                if (stale.test(number)) {
+                    trace(w -> w.clear(name, number));
+                    return true;
+                }
+                return false;
+            });
+        }
+    }
+
+    @Override
+    public void onDeletedJob(@NonNull Job<?, ?> job) {
+        delegate.onDeletedJob(job);
+    }
+
+    private static Object lockFor(String name) {
+        return LOCKS[Math.floorMod(name.hashCode(), LOCK_STRIPES)];
+    }
+
+    private static int newerBuild(String externalizableId) {
+        try {
+            return Integer.parseInt(externalizableId.substring(externalizableId.lastIndexOf('#') + 1));
+        } catch (NumberFormatException x) {
+            return 0;
+        }
+    }
+
+    private static synchronized void trace(TraceOperation operation) {
+        if (closed) {
+            return;
+        }
+        try {
+            if (writer == null) {
+                writer = new MilestoneTrace.Writer(new FileOutputStream(FILE, true));
+                LOGGER.info(() -> "Tracing milestones to " + FILE);
+                Timer.get().scheduleWithFixedDelay(TracingMilestoneStorage::flush, FLUSH_SECONDS, FLUSH_SECONDS, TimeUnit.SECONDS);
+            }
+            operation.apply(writer);
+        } catch (IOException x) {
+            LOGGER.log(Level.WARNING, "Could not trace milestones to " + FILE, x);
+        }
+    }
+
+    private static synchronized void flush() {
+        try {
+            if (writer != null) {
+                writer.flush();
+            }
+        } catch (IOException x) {
+            LOGGER.log(Level.WARNING, "Could not flush milestone trace " + FILE, x);
+        }
+    }
+
+    @Terminator
+    public static synchronized void close() throws IOException {
+        closed = true;
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+    }
+
+    @FunctionalInterface
+    private interface TraceOperation {
+        void apply(MilestoneTrace.Writer writer) throws IOException;
+    }
+}
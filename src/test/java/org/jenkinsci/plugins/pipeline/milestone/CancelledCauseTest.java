@@ -0,0 +1,67 @@
+package org.jenkinsci.plugins.pipeline.milestone;
+
+import hudson.model.FreeStyleProject;
+import hudson.util.XStream2;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class CancelledCauseTest {
+    @Rule public JenkinsRule r = new JenkinsRule();
+
+    private final XStream2 xstream = new XStream2();
+
+    @Test
+    public void sharedPerNewerBuild() throws Exception {
+        FreeStyleProject p = r.createFreeStyleProject("p");
+        FreeStyleProject q = r.createFreeStyleProject("q");
+        assertSame(CancelledCause.of(p, "p#2"), CancelledCause.of(p, "p#2"));
+        assertEquals("Superseded by #2", CancelledCause.of(p, "p#2").getShortDescription());
+        assertEquals("Superseded by p#2", CancelledCause.of(q, "p#2").getShortDescription());
+    }
+
+    @Test
+    public void newerBuildRecordedByNumber() throws Exception {
+        FreeStyleProject p = r.createFreeStyleProject("p");
+        var b1 = r.buildAndAssertSuccess(p);
+        var b2 = r.buildAndAssertSuccess(p);
+        CancelledCause cause = CancelledCause.of(p, b2);
+        assertSame(CancelledCause.of(p, b2.getExternalizableId()), cause);
+        String xml = xstream.toXML(cause);
+        assertFalse(xml, xml.contains("displayName"));
+        assertFalse(xml, xml.contains("newerBuild"));
+        assertFalse(xml, xml.contains("<job>"));
+        assertSame(cause, xstream.fromXML(xml));
+        assertSame(b2, cause.getNewerBuild(b1));
+        assertNull(cause.getNewerBuild());
+    }
+
+    @Test
+    public void readsOldFormat() throws Exception {
+        FreeStyleProject p = r.createFreeStyleProject("p");
+        FreeStyleProject q = r.createFreeStyleProject("q");
+        var b1 = r.buildAndAssertSuccess(p);
+        var b2 = r.buildAndAssertSuccess(p);
+        CancelledCause cause = (CancelledCause) xstream.fromXML("""
+                <org.jenkinsci.plugins.pipeline.milestone.CancelledCause>
+                  <newerBuild>p#2</newerBuild>
+                  <displayName>p#2</displayName>
+                </org.jenkinsci.plugins.pipeline.milestone.CancelledCause>
+                """);
+        assertSame(CancelledCause.of(q, "p#2"), cause);
+        assertEquals("Superseded by p#2", cause.getShortDescription());
+        assertSame(b2, cause.getNewerBuild(b1));
+        Object named = xstream.fromXML("""
+                <org.jenkinsci.plugins.pipeline.milestone.CancelledCause>
+                  <newerBuild>p#3</newerBuild>
+                  <displayName>release 1.0</displayName>
+                </org.jenkinsci.plugins.pipeline.milestone.CancelledCause>
+                """);
+        assertEquals("Superseded by release 1.0", ((CancelledCause) named).getShortDescription());
+    }
+}
@@ -0,0 +1,241 @@
+package org.jenkinsci.plugins.pipeline.milestone;
+
+import hudson.model.Job;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Drives {@link DefaultMilestoneStorage} and {@link MilestoneStepExecution#getBuildsToCancel} from many threads,
+ * each playing randomized builds that start, pass milestones and complete.
+ * Every result is checked against a sequential model of the builds:
+ * <ul>
+ *   <li>returned milestones never show a value that was not stored, a completed build, or an older value than one stored before the call,</li>
+ *   <li>builds to cancel follow the ordering rules documented on {@link MilestoneStep},</li>
+ *   <li>no call throws, in particular no {@link java.util.ConcurrentModificationException}.</li>
+ * </ul>
+ */
+public class DefaultMilestoneStorageStressTest {
+    private static final int THREADS = 8;
+    private static final int BUILDS_PER_THREAD = 300;
+    private static final int MAX_MILESTONES = 6;
+    private static final int NONE = Integer.MIN_VALUE;
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    private final DefaultMilestoneStorage storage = new DefaultMilestoneStorage();
+    /**
+     * Logical clock ordering invocations and responses of storage calls.
+     */
+    private final AtomicLong clock = new AtomicLong();
+    private final Map<Job<?, ?>, AtomicInteger> buildNumbers = new ConcurrentHashMap<>();
+    private final Map<Job<?, ?>, Map<Integer, BuildHistory>> histories = new ConcurrentHashMap<>();
+    private final Queue<String> failures = new ConcurrentLinkedQueue<>();
+
+    @Test
+    public void concurrentBuildsMatchSequentialModel() throws Exception {
+        List<Job<?, ?>> jobs = List.of(j.createProject(WorkflowJob.class, "a"), j.createProject(WorkflowJob.class, "b"));
+        for (Job<?, ?> job : jobs) {
+            buildNumbers.put(job, new AtomicInteger());
+            histories.put(job, new ConcurrentHashMap<>());
+        }
+        CyclicBarrier barrier = new CyclicBarrier(THREADS);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            Thread t = new Thread(() -> {
+                try {
+                    barrier.await();
+                    for (int b = 0; b < BUILDS_PER_THREAD; b++) {
+                        playBuild(jobs.get(ThreadLocalRandom.current().nextInt(jobs.size())));
+                    }
+                } catch (Throwable x) {
+                    failures.add(Thread.currentThread().getName() + " threw " + x);
+                }
+            }, "stress-" + i);
+            threads.add(t);
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertTrue("First failures: " + failures.stream().limit(10).toList(), failures.isEmpty());
+        for (Job<?, ?> job : jobs) {
+            assertNull(storage.newestPassedOrdinal(job));
+            assertTrue(storage.clear(job, Integer.MAX_VALUE).milestones().isEmpty());
+        }
+    }
+
+    private void playBuild(Job<?, ?> job) {
+        var random = ThreadLocalRandom.current();
+        int number = buildNumbers.get(job).incrementAndGet();
+        var history = new BuildHistory();
+        histories.get(job).put(number, history);
+        Integer ordinal = null;
+        checkedStore(job, number, null, history);
+        int milestones = random.nextInt(MAX_MILESTONES + 1);
+        for (int m = 0; m < milestones; m++) {
+            ordinal = (ordinal == null ? 0 : ordinal) + 1 + random.nextInt(3);
+            checkedStore(job, number, ordinal, history);
+            if (random.nextInt(4) == 0) {
+                Thread.yield();
+            }
+        }
+        long invoked = clock.incrementAndGet();
+        var result = storage.clear(job, number);
+        history.clearedAt = clock.incrementAndGet();
+        assertEqual(ordinal, result.lastMilestoneBeforeCompletion(), job, number, "last milestone before completion");
+        if (result.milestones().containsKey(number)) {
+            failures.add(job.getName() + "#" + number + " still present after clear: " + result.milestones());
+        }
+        checkSnapshot(job, number, invoked, result.milestones());
+        if (result.lastMilestoneBeforeCompletion() != null) {
+            checkCancellations(job, number, result.lastMilestoneBeforeCompletion() + 1, result.milestones());
+        }
+    }
+
+    private void checkedStore(Job<?, ?> job, int number, Integer ordinal, BuildHistory history) {
+        history.values.add(ordinal == null ? NONE : ordinal);
+        long invoked = clock.incrementAndGet();
+        Map<Integer, Integer> milestones = storage.store(job, number, ordinal);
+        history.stored = new Stored(clock.incrementAndGet(), ordinal == null ? NONE : ordinal);
+        if (!milestones.containsKey(number)) {
+            failures.add(job.getName() + "#" + number + " missing right after storing " + ordinal + ": " + milestones);
+        } else {
+            assertEqual(ordinal, milestones.get(number), job, number, "own milestone");
+        }
+        checkSnapshot(job, number, invoked, milestones);
+        checkCancellations(job, number, ordinal, milestones);
+    }
+
+    /**
+     * Checks milestones of other builds against what their owners did before {@code invoked}.
+     */
+    private void checkSnapshot(Job<?, ?> job, int number, long invoked, Map<Integer, Integer> milestones) {
+        for (Map.Entry<Integer, Integer> entry : milestones.entrySet()) {
+            int other = entry.getKey();
+            if (other == number) {
+                continue;
+            }
+            BuildHistory history = histories.get(job).get(other);
+            int value = entry.getValue() == null ? NONE : entry.getValue();
+            if (history == null || !history.values.contains(value)) {
+                failures.add(job.getName() + "#" + number + " saw #" + other + " at " + entry.getValue() + " which was never stored");
+                continue;
+            }
+            if (history.clearedAt < invoked) {
+                failures.add(job.getName() + "#" + number + " saw #" + other + " which completed before the call");
+            }
+            Stored stored = history.stored;
+            if (stored != null && stored.at < invoked && value < stored.ordinal) {
+                failures.add(job.getName() + "#" + number + " saw #" + other + " at " + entry.getValue() + " but " + stored.ordinal + " was stored before the call (lost update)");
+            }
+        }
+    }
+
+    private void checkCancellations(Job<?, ?> job, int number, Integer ordinal, Map<Integer, Integer> milestones) {
+        Map<Integer, Integer> toCancel = MilestoneStepExecution.getBuildsToCancel(number, ordinal, milestones);
+        for (Map.Entry<Integer, Integer> entry : toCancel.entrySet()) {
+            int victim = entry.getKey();
+            int newer = entry.getValue();
+            boolean valid;
+            if (victim == number) {
+                Integer newerOrdinal = milestones.get(newer);
+                valid = newer > number && newerOrdinal != null && (ordinal == null || newerOrdinal >= ordinal);
+            } else {
+                Integer victimOrdinal = milestones.get(victim);
+                valid = newer == number && victim < number && (victimOrdinal == null || (ordinal != null && victimOrdinal < ordinal));
+            }
+            if (!valid) {
+                failures.add(job.getName() + "#" + number + " at " + ordinal + " wrongly cancels #" + victim + " for #" + newer + " in " + milestones);
+            }
+        }
+        for (Map.Entry<Integer, Integer> entry : milestones.entrySet()) {
+            Integer other = entry.getValue();
+            if (entry.getKey() < number && (other == null || (ordinal != null && other < ordinal)) && !toCancel.containsKey(entry.getKey())) {
+                failures.add(job.getName() + "#" + number + " at " + ordinal + " does not cancel #" + entry.getKey() + " in " + milestones);
+            }
+        }
+    }
+
+    private void assertEqual(Integer expected, Integer actual, Job<?, ?> job, int number, String what) {
+        if (expected == null ? actual != null : !expected.equals(actual)) {
+            failures.add(job.getName() + "#" + number + " " + what + ": expected " + expected + " but was " + actual);
+        }
+    }
+
+    @Test
+    public void snapshotsAreStable() throws Exception {
+        WorkflowJob job = j.createProject(WorkflowJob.class, "p");
+        Map<Integer, Integer> milestones = storage.store(job, 1, null);
+        storage.store(job, 2, 1);
+        storage.clear(job, 1);
+        assertEquals(Set.of(1), milestones.keySet());
+        assertEquals(Set.of(2, 3), storage.store(job, 3, null).keySet());
+    }
+
+    @Test
+    public void bulkLoadKeepsHighestMilestones() throws Exception {
+        WorkflowJob job = j.createProject(WorkflowJob.class, "p");
+        storage.store(job, 2, 3);
+        Map<Integer, Integer> loaded = new HashMap<>();
+        loaded.put(1, null);
+        loaded.put(2, 1);
+        loaded.put(3, 2);
+        assertEquals(Map.of(2, 3, 3, 2), Map.copyOf(storage.bulkLoad(job, loaded).tailMap(2)));
+        assertEquals(Set.of(1, 2, 3), storage.bulkLoad(job, Map.of()).keySet());
+        assertEquals(1, storage.countBuildsAt(job, 2));
+    }
+
+    @Test
+    public void watermarkTracksNewestPasser() throws Exception {
+        WorkflowJob job = j.createProject(WorkflowJob.class, "p");
+        assertEquals(0, storage.overtakenBy(job, 1, 0));
+        storage.raiseWatermark(job, 3, 2);
+        storage.raiseWatermark(job, 2, 5);
+        assertEquals(3, storage.overtakenBy(job, 1, 2));
+        assertEquals(0, storage.overtakenBy(job, 1, 3));
+        assertEquals(0, storage.overtakenBy(job, 3, 0));
+        storage.raiseWatermark(job, 3, 4);
+        assertEquals(3, storage.overtakenBy(job, 2, 4));
+    }
+
+    @Test
+    public void watermarkHandlesNegativeOrdinalsAndIsDroppedWithLastBuild() throws Exception {
+        WorkflowJob job = j.createProject(WorkflowJob.class, "p");
+        storage.raiseWatermark(job, 2, -1);
+        assertEquals(2, storage.overtakenBy(job, 1, -1));
+        assertEquals(0, storage.overtakenBy(job, 1, 0));
+        assertEquals(0, storage.overtakenBy(job, 3, -1));
+        storage.raiseWatermark(job, 2, 0);
+        assertEquals(2, storage.overtakenBy(job, 1, 0));
+        storage.store(job, 2, 0);
+        storage.clear(job, 2);
+        assertEquals(0, storage.overtakenBy(job, 1, 0));
+    }
+
+    private record Stored(long at, int ordinal) {}
+
+    private static final class BuildHistory {
+        final Set<Integer> values = ConcurrentHashMap.newKeySet();
+        volatile Stored stored;
+        volatile long clearedAt = Long.MAX_VALUE;
+    }
+}
@@ -0,0 +1,110 @@
+package org.jenkinsci.plugins.pipeline.milestone;
+
+import java.io.File;
+import java.util.Map;
+import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.jenkinsci.plugins.workflow.test.steps.SemaphoreStep;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class MappedMilestoneStorageTest {
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void storeAndClear() throws Exception {
+        WorkflowJob job = j.createProject(WorkflowJob.class, "p");
+        var storage = new MappedMilestoneStorage(tmp.newFile(), 4, 8);
+        storage.store(job, 1, null);
+        storage.store(job, 2, 1);
+        storage.store(job, 1, 2);
+        // milestones never go back
+        assertEquals(Map.of(1, 2, 2, 1), storage.store(job, 2, 0));
+        assertEquals(Integer.valueOf(1), storage.newestPassedOrdinal(job));
+        assertEquals(1, storage.countBuildsAt(job, 2));
+        var result = storage.clear(job, 1);
+        assertEquals(2, (int) result.lastMilestoneBeforeCompletion());
+        assertEquals(Map.of(2, 1), result.milestones());
+        assertTrue(storage.clear(job, 2).milestones().isEmpty());
+        assertNull(storage.newestPassedOrdinal(job));
+    }
+
+    @Test
+    public void queriesReadBlockHeader() throws Exception {
+        WorkflowJob job = j.createProject(WorkflowJob.class, "p");
+        var storage = new MappedMilestoneStorage(tmp.newFile(), 4, 8);
+        storage.store(job, 1, null);
+        storage.store(job, 2, 1);
+        storage.raiseWatermark(job, 2, 1);
+        assertEquals(2, storage.overtakenBy(job, 1, 1));
+        assertEquals(0, storage.overtakenBy(job, 1, 2));
+        assertEquals(Integer.valueOf(1), storage.newestPassedOrdinal(job));
+        storage.clear(job, 2);
+        assertNull(storage.newestPassedOrdinal(job));
+        // #1 may still get overtaken at milestone 1
+        assertEquals(2, storage.overtakenBy(job, 1, 1));
+        storage.clear(job, 1);
+        assertEquals(0, storage.overtakenBy(job, 1, 1));
+        // the block is reused from scratch
+        storage.store(job, 3, 0);
+        assertEquals(Integer.valueOf(0), storage.newestPassedOrdinal(job));
+        assertEquals(0, storage.overtakenBy(job, 1, 0));
+    }
+
+    @Test
+    public void findsBuildsPastDeletedRecords() throws Exception {
+        WorkflowJob job = j.createProject(WorkflowJob.class, "p");
+        var storage = new MappedMilestoneStorage(tmp.newFile(), 4, 4);
+        // all starting from the same slot
+        storage.store(job, 1, 0);
+        storage.store(job, 5, 0);
+        storage.store(job, 9, 0);
+        storage.clear(job, 5);
+        assertEquals(Map.of(1, 0, 9, 1), storage.store(job, 9, 1));
+        assertEquals(1, storage.countBuildsAt(job, 0));
+        assertEquals(1, storage.countBuildsAt(job, 1));
+        assertEquals(Map.of(1, 0), storage.clear(job, 9).milestones());
+    }
+
+    @Test
+    public void spillsToHeapWhenFull() throws Exception {
+        WorkflowJob job = j.createProject(WorkflowJob.class, "p");
+        var storage = new MappedMilestoneStorage(tmp.newFile(), 1, 2);
+        storage.store(job, 1, 1);
+        storage.store(job, 2, 2);
+        assertEquals(Map.of(1, 1, 2, 2, 3, 3), storage.store(job, 3, 3));
+        // the only block is free again, so another job still fits
+        WorkflowJob other = j.createProject(WorkflowJob.class, "other");
+        assertEquals(Map.of(1, 1), storage.store(other, 1, 1));
+        assertEquals(Map.of(2, 2, 3, 3), storage.clear(job, 1).milestones());
+        assertEquals(1, storage.countBuildsAt(job, 3));
+    }
+
+    @Test
+    public void reloadsRunningBuilds() throws Exception {
+        WorkflowJob job = j.createProject(WorkflowJob.class, "p");
+        job.setDefinition(new CpsFlowDefinition("semaphore 'wait'", true));
+        WorkflowRun b1 = job.scheduleBuild2(0).waitForStart();
+        SemaphoreStep.waitForStart("wait/1", b1);
+        File file = tmp.newFile();
+        var storage = new MappedMilestoneStorage(file, 4, 8);
+        storage.store(job, 1, 3);
+        // not running
+        storage.store(job, 7, 4);
+        var reloaded = new MappedMilestoneStorage(file, 4, 8);
+        assertEquals(Map.of(1, 3, 8, 4), reloaded.store(job, 8, 4));
+        SemaphoreStep.success("wait/1", null);
+        j.waitForCompletion(b1);
+    }
+}
@@ -0,0 +1,173 @@
+package org.jenkinsci.plugins.pipeline.milestone;
+
+import hudson.model.Result;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedThread;
+import jdk.jfr.consumer.RecordingFile;
+import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.jenkinsci.plugins.workflow.test.steps.SemaphoreStep;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Runs many pipelines through milestones at the same time and reports how the plugin copes:
+ * wall-clock time per milestone pass, blocking of CPS VM threads, time from a build passing a milestone to the cancellation
+ * of the builds it supersedes, time for those to complete, and heap used by {@link DefaultMilestoneStorage}.
+ * <p>
+ * Excluded from the default build, run with {@code mvn test -P load-test}.
+ * Sizes can be changed with the {@code milestone.loadTest.builds} and {@code milestone.loadTest.jobs} system properties.
+ */
+public class MilestoneLoadTest {
+    private static final int BUILDS = Integer.getInteger("milestone.loadTest.builds", 200);
+    private static final int JOBS = Integer.getInteger("milestone.loadTest.jobs", 2000);
+    private static final String SCRIPT = """
+            semaphore 'wait'
+            milestone 1
+            milestone 2
+            milestone 3
+            """;
+
+    @Rule
+    public JenkinsRule r = new JenkinsRule();
+
+    {
+        r.timeout = 0;
+    }
+
+    @Test
+    public void concurrentBuildsOfOneJob() throws Exception {
+        WorkflowJob p = r.createProject(WorkflowJob.class, "p");
+        p.setDefinition(new CpsFlowDefinition(SCRIPT, true));
+        List<WorkflowRun> builds = new ArrayList<>();
+        for (int i = 1; i <= BUILDS; i++) {
+            WorkflowRun b = p.scheduleBuild2(0).waitForStart();
+            SemaphoreStep.waitForStart("wait/" + i, b);
+            builds.add(b);
+        }
+        record(BUILDS + " builds of one job", () -> {
+            for (int i = 1; i <= BUILDS; i++) {
+                SemaphoreStep.success("wait/" + i, null);
+            }
+            for (WorkflowRun b : builds) {
+                r.waitForCompletion(b);
+            }
+        });
+        r.assertBuildStatusSuccess(builds.get(BUILDS - 1));
+        System.out.printf("  %-30s %d%n", "superseded builds", builds.stream().filter(b -> b.getResult() == Result.NOT_BUILT).count());
+    }
+
+    @Test
+    public void concurrentJobs() throws Exception {
+        List<WorkflowJob> jobs = new ArrayList<>();
+        List<WorkflowRun> builds = new ArrayList<>();
+        for (int i = 1; i <= JOBS; i++) {
+            WorkflowJob p = r.createProject(WorkflowJob.class, "p" + i);
+            p.setDefinition(new CpsFlowDefinition(SCRIPT, true));
+            WorkflowRun b = p.scheduleBuild2(0).waitForStart();
+            SemaphoreStep.waitForStart("wait/" + i, b);
+            jobs.add(p);
+            builds.add(b);
+        }
+        record(JOBS + " jobs", () -> {
+            for (int i = 1; i <= JOBS; i++) {
+                SemaphoreStep.success("wait/" + i, null);
+            }
+            for (WorkflowRun b : builds) {
+                r.assertBuildStatusSuccess(r.waitForCompletion(b));
+            }
+        });
+        reportStorageHeap(jobs);
+    }
+
+    /**
+     * Runs a scenario while recording milestone events and blocked CPS VM threads, then prints a summary of them.
+     */
+    private void record(String scenario, Scenario run) throws Exception {
+        Path dump = Files.createTempFile("milestones", ".jfr");
+        long start = System.nanoTime();
+        try (Recording recording = new Recording()) {
+            recording.enable("org.jenkinsci.plugins.pipeline.milestone.Pass");
+            recording.enable("org.jenkinsci.plugins.pipeline.milestone.CancelAll");
+            recording.enable("jdk.JavaMonitorEnter").withThreshold(Duration.ofMillis(1));
+            recording.enable("jdk.ThreadPark").withThreshold(Duration.ofMillis(1));
+            recording.start();
+            run.run();
+            recording.stop();
+            recording.dump(dump);
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        var passes = LatencyHistogram.forNanos();
+        var cancellations = LatencyHistogram.forNanos();
+        var blocked = LatencyHistogram.forNanos();
+        for (RecordedEvent event : RecordingFile.readAllEvents(dump)) {
+            long micros = event.getDuration().toNanos() / 1000;
+            String name = event.getEventType().getName();
+            if (name.endsWith(".Pass")) {
+                passes.record(micros);
+            } else if (name.endsWith(".CancelAll")) {
+                cancellations.record(micros);
+            } else if (isCpsVmThread(event.getThread())) {
+                blocked.record(micros);
+            }
+        }
+        Files.delete(dump);
+        var statistics = MilestoneStatistics.get();
+        System.out.printf("%s: %d ms%n", scenario, elapsedMillis);
+        print("milestone pass", passes);
+        print("supersession to cancellation", cancellations);
+        print("CPS VM thread blocked", blocked);
+        System.out.printf("  %-30s p50=%ss p99=%ss%n", "cancellation to completion", statistics.getReleaseMedianSeconds(), statistics.getRelease99thSeconds());
+    }
+
+    private static boolean isCpsVmThread(RecordedThread thread) {
+        return thread != null && thread.getJavaName() != null && thread.getJavaName().contains("CpsFlowExecution");
+    }
+
+    private static void print(String name, LatencyHistogram histogram) {
+        System.out.printf("  %-30s count=%d p50=%dµs p99=%dµs max=%dµs%n", name, histogram.getCount(),
+                histogram.getValueAtPercentile(50), histogram.getValueAtPercentile(99), histogram.getMax());
+    }
+
+    /**
+     * Measures the heap a fresh storage takes to track one running build past a milestone per job, and {@link #BUILDS} builds of one of them.
+     */
+    private static void reportStorageHeap(List<WorkflowJob> jobs) {
+        var storage = new DefaultMilestoneStorage();
+        long before = usedHeap();
+        for (WorkflowJob job : jobs) {
+            storage.store(job, 1, 1);
+        }
+        for (int i = 2; i <= BUILDS; i++) {
+            storage.store(jobs.get(0), i, 1 + i % 3);
+        }
+        long after = usedHeap();
+        System.out.printf("  %-30s %d KiB for %d builds of %d jobs%n", "storage heap", Math.max(0, after - before) / 1024,
+                jobs.size() + BUILDS - 1, jobs.size());
+        // keep the storage reachable until measured
+        assertEquals(BUILDS, storage.store(jobs.get(0), 1, 1).size());
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    @FunctionalInterface
+    private interface Scenario {
+        void run() throws Exception;
+    }
+}
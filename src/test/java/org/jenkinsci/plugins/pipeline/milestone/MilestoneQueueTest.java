@@ -0,0 +1,123 @@
+package org.jenkinsci.plugins.pipeline.milestone;
+
+import hudson.model.Action;
+import hudson.model.InvisibleAction;
+import hudson.model.ParametersAction;
+import hudson.model.ParametersDefinitionProperty;
+import hudson.model.Queue;
+import hudson.model.StringParameterDefinition;
+import hudson.model.StringParameterValue;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.jenkinsci.plugins.workflow.test.steps.SemaphoreStep;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import static org.junit.Assert.assertEquals;
+
+public class MilestoneQueueTest {
+    @Rule
+    public JenkinsRule r = new JenkinsRule();
+
+    @Test
+    public void olderItemsDropped() throws Exception {
+        MilestoneQueueListener.ENABLED = true;
+        try {
+            WorkflowJob p = r.createProject(WorkflowJob.class, "p");
+            p.addProperty(new ParametersDefinitionProperty(new StringParameterDefinition("BRANCH", "main")));
+            p.setDefinition(new CpsFlowDefinition("milestone 1; semaphore 'wait'", true));
+            WorkflowRun b1 = p.scheduleBuild2(0).waitForStart();
+            SemaphoreStep.waitForStart("wait/1", b1);
+            schedule(p, "main");
+            schedule(p, "feature");
+            schedule(p, "main");
+            Queue queue = r.jenkins.getQueue();
+            assertEquals(List.of("main"), branches(queue.getItems(p)));
+            queue.clear();
+            SemaphoreStep.success("wait/1", null);
+            r.assertBuildStatusSuccess(r.waitForCompletion(b1));
+        } finally {
+            MilestoneQueueListener.ENABLED = false;
+        }
+    }
+
+    @Test
+    public void olderItemsWithSameParametersDropped() throws Exception {
+        MilestoneQueueListener.ENABLED = true;
+        MilestoneQueueListener.SAME_PARAMETERS = true;
+        try {
+            WorkflowJob p = r.createProject(WorkflowJob.class, "p");
+            p.addProperty(new ParametersDefinitionProperty(new StringParameterDefinition("BRANCH", "main")));
+            p.setDefinition(new CpsFlowDefinition("milestone 1; semaphore 'wait'", true));
+            WorkflowRun b1 = p.scheduleBuild2(0).waitForStart();
+            SemaphoreStep.waitForStart("wait/1", b1);
+            schedule(p, "main");
+            schedule(p, "feature");
+            schedule(p, "main");
+            Queue queue = r.jenkins.getQueue();
+            assertEquals(List.of("feature", "main"), branches(queue.getItems(p)));
+            queue.clear();
+            SemaphoreStep.success("wait/1", null);
+            r.assertBuildStatusSuccess(r.waitForCompletion(b1));
+        } finally {
+            MilestoneQueueListener.ENABLED = false;
+            MilestoneQueueListener.SAME_PARAMETERS = false;
+        }
+    }
+
+    @Test
+    public void sorterOnlyReordersJobsUsingMilestones() throws Exception {
+        r.jenkins.setNumExecutors(0);
+        WorkflowJob plain = r.createProject(WorkflowJob.class, "plain");
+        plain.setDefinition(new CpsFlowDefinition("node {}", true));
+        WorkflowJob p = r.createProject(WorkflowJob.class, "p");
+        p.setDefinition(new CpsFlowDefinition("milestone 1; node {}", true));
+        List<WorkflowRun> builds = new ArrayList<>();
+        for (WorkflowJob job : List.of(plain, plain, p, p)) {
+            builds.add(job.scheduleBuild2(0).waitForStart());
+            waitForBuildableItems(builds.size());
+        }
+        List<Queue.BuildableItem> items = new ArrayList<>(r.jenkins.getQueue().getBuildableItems());
+        items.sort(Comparator.comparingLong(Queue.Item::getId));
+        new MilestoneQueueSorter().sortBuildableItems(items);
+        assertEquals(List.of("plain#1", "plain#2", "p#2", "p#1"), items.stream()
+                .map(item -> ((WorkflowRun) item.task.getOwnerExecutable()).getExternalizableId())
+                .toList());
+        r.jenkins.setNumExecutors(1);
+        for (WorkflowRun build : builds) {
+            r.assertBuildStatusSuccess(r.waitForCompletion(build));
+        }
+    }
+
+    private void waitForBuildableItems(int count) throws InterruptedException {
+        Queue queue = r.jenkins.getQueue();
+        while (queue.getBuildableItems().size() < count) {
+            queue.maintain();
+            Thread.sleep(100);
+        }
+    }
+
+    private static void schedule(WorkflowJob job, String branch) {
+        // like distinct SCM revisions, which the queue does not fold together
+        job.scheduleBuild2(1000, new ParametersAction(new StringParameterValue("BRANCH", branch)), new Unfoldable());
+    }
+
+    private static List<String> branches(List<Queue.Item> items) {
+        return items.stream()
+                .sorted(Comparator.comparingLong(Queue.Item::getId))
+                .map(item -> ((StringParameterValue) item.getAction(ParametersAction.class).getParameter("BRANCH")).getValue())
+                .toList();
+    }
+
+    private static final class Unfoldable extends InvisibleAction implements Queue.QueueAction {
+        @Override
+        public boolean shouldSchedule(List<Action> actions) {
+            return true;
+        }
+    }
+}
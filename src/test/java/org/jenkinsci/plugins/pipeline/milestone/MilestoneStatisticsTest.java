@@ -0,0 +1,61 @@
+package org.jenkinsci.plugins.pipeline.milestone;
+
+import hudson.model.Result;
+import jenkins.model.Jenkins;
+import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.jenkinsci.plugins.workflow.test.steps.SemaphoreStep;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.MockAuthorizationStrategy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MilestoneStatisticsTest {
+    @Rule
+    public JenkinsRule r = new JenkinsRule();
+
+    @Test
+    public void onlyBuildsUsingMilestonesAreCounted() throws Exception {
+        WorkflowJob plain = r.createProject(WorkflowJob.class, "plain");
+        plain.setDefinition(new CpsFlowDefinition("echo 'no milestone'", true));
+        r.buildAndAssertSuccess(plain);
+        WorkflowJob p = r.createProject(WorkflowJob.class, "p");
+        p.setDefinition(new CpsFlowDefinition("milestone 1; semaphore 'wait'; milestone 2", true));
+        WorkflowRun b1 = p.scheduleBuild2(0).waitForStart();
+        SemaphoreStep.waitForStart("wait/1", b1);
+        WorkflowRun b2 = p.scheduleBuild2(0).waitForStart();
+        SemaphoreStep.waitForStart("wait/2", b2);
+        var statistics = MilestoneStatistics.get();
+        assertEquals(2, statistics.getTracked());
+        SemaphoreStep.success("wait/2", null);
+        r.assertBuildStatusSuccess(r.waitForCompletion(b2));
+        r.assertBuildStatus(Result.NOT_BUILT, r.waitForCompletion(b1));
+        assertEquals(1, statistics.getJobs().size());
+        var job = statistics.getJobs().get(0);
+        assertEquals("p", job.getFullName());
+        assertEquals(2, job.getStarted());
+        assertEquals(3, job.getPassed());
+        assertEquals(1, job.getCancelled());
+        assertEquals(0, job.getTracked());
+        assertEquals("50.0%", statistics.getCancellationRate());
+    }
+
+    @Test
+    public void pageRequiresAdministerPermission() throws Exception {
+        r.jenkins.setSecurityRealm(r.createDummySecurityRealm());
+        r.jenkins.setAuthorizationStrategy(new MockAuthorizationStrategy()
+                .grant(Jenkins.READ).everywhere().to("reader")
+                .grant(Jenkins.ADMINISTER).everywhere().to("admin"));
+        var wc = r.createWebClient();
+        wc.setThrowExceptionOnFailingStatusCode(false);
+        assertEquals(403, wc.login("reader").goTo("manage/milestones").getWebResponse().getStatusCode());
+        var page = r.createWebClient().login("admin").goTo("manage/milestones");
+        assertTrue(page.getWebResponse().getContentAsString().contains("No build has used milestones since Jenkins started."));
+        assertFalse(page.getWebResponse().getContentAsString().contains("jenkins-table"));
+    }
+}
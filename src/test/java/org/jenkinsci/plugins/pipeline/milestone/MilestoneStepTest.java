@@ -1,7 +1,23 @@
 package org.jenkinsci.plugins.pipeline.milestone;
 
+import hudson.ExtensionList;
+import hudson.model.Cause;
+import hudson.model.CauseAction;
 import hudson.model.Result;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Handler;
 import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
 import org.jenkinsci.plugins.workflow.cps.SnippetizerTester;
 import org.jenkinsci.plugins.workflow.job.WorkflowJob;
@@ -12,9 +28,15 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.jvnet.hudson.test.BuildWatcher;
 import org.jvnet.hudson.test.Issue;
+import org.jvnet.hudson.test.JenkinsRule;
 import org.jvnet.hudson.test.JenkinsSessionRule;
 import org.jvnet.hudson.test.LoggerRule;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
 public class MilestoneStepTest {
     @ClassRule
     public static BuildWatcher buildWatcher = new BuildWatcher();
@@ -226,6 +248,229 @@ public class MilestoneStepTest {
         });
     }
 
+    @Test
+    public void parallelMilestonesTrackedPerBranch() throws Throwable {
+        story.then(r -> {
+            WorkflowJob p = r.jenkins.createProject(WorkflowJob.class, "p");
+            p.setDefinition(new CpsFlowDefinition(
+                    """
+                            milestone()
+                            parallel one: {
+                              milestone parallel: true
+                              semaphore 'one'
+                              milestone ordinal: 5, parallel: true
+                            }, two: {
+                              milestone ordinal: 3, parallel: true
+                              milestone parallel: true
+                            }
+                            milestone ordinal: 6
+                            """, true));
+            WorkflowRun b1 = p.scheduleBuild2(0).waitForStart();
+            SemaphoreStep.waitForStart("one/1", b1);
+            WorkflowRun b2 = p.scheduleBuild2(0).waitForStart();
+            SemaphoreStep.waitForStart("one/2", b2);
+            // #2 passes milestone 5 in branch one, #1 only passed milestone 4 in branch two
+            SemaphoreStep.success("one/2", null);
+            r.assertBuildStatusSuccess(r.waitForCompletion(b2));
+            r.assertBuildStatus(Result.NOT_BUILT, r.waitForCompletion(b1));
+        });
+    }
+
+    @Test
+    public void keepNewestBuildsPolicy() throws Throwable {
+        story.then(r -> {
+            WorkflowJob p = r.jenkins.createProject(WorkflowJob.class, "p");
+            MilestoneJobProperty property = new MilestoneJobProperty();
+            property.setPolicy(new KeepNewestBuildsPolicy(2));
+            p.addProperty(property);
+            r.configRoundtrip(p);
+            r.assertEqualDataBoundBeans(property, p.getProperty(MilestoneJobProperty.class));
+            p.setDefinition(new CpsFlowDefinition(
+                    """
+                            milestone()
+                            semaphore 'wait'
+                            milestone()
+                            """, true));
+            WorkflowRun b1 = p.scheduleBuild2(0).waitForStart();
+            SemaphoreStep.waitForStart("wait/1", b1);
+            WorkflowRun b2 = p.scheduleBuild2(0).waitForStart();
+            SemaphoreStep.waitForStart("wait/2", b2);
+            WorkflowRun b3 = p.scheduleBuild2(0).waitForStart();
+            SemaphoreStep.waitForStart("wait/3", b3);
+            // #3 passes the second milestone, #2 is kept along with it
+            SemaphoreStep.success("wait/3", null);
+            r.assertBuildStatusSuccess(r.waitForCompletion(b3));
+            r.assertBuildStatus(Result.NOT_BUILT, r.waitForCompletion(b1));
+            SemaphoreStep.success("wait/2", null);
+            r.assertBuildStatusSuccess(r.waitForCompletion(b2));
+        });
+    }
+
+    @Test
+    public void concurrencyCapsBuildsPastMilestone() throws Throwable {
+        story.then(r -> {
+            WorkflowJob p = r.jenkins.createProject(WorkflowJob.class, "p");
+            p.setDefinition(new CpsFlowDefinition(
+                    """
+                            milestone ordinal: 1, concurrency: 2
+                            semaphore 'wait'
+                            milestone 2
+                            """, true));
+            WorkflowRun b1 = p.scheduleBuild2(0).waitForStart();
+            SemaphoreStep.waitForStart("wait/1", b1);
+            WorkflowRun b2 = p.scheduleBuild2(0).waitForStart();
+            SemaphoreStep.waitForStart("wait/2", b2);
+            // #3 is the third build past milestone 1, so the oldest one gets cancelled
+            WorkflowRun b3 = p.scheduleBuild2(0).waitForStart();
+            SemaphoreStep.waitForStart("wait/3", b3);
+            r.assertBuildStatus(Result.NOT_BUILT, r.waitForCompletion(b1));
+            SemaphoreStep.success("wait/2", null);
+            r.assertBuildStatusSuccess(r.waitForCompletion(b2));
+            SemaphoreStep.success("wait/3", null);
+            r.assertBuildStatusSuccess(r.waitForCompletion(b3));
+        });
+    }
+
+    @Test
+    public void concurrencyCancelsOldestBuildItself() throws Throwable {
+        story.then(r -> {
+            WorkflowJob p = r.jenkins.createProject(WorkflowJob.class, "p");
+            MilestoneJobProperty property = new MilestoneJobProperty();
+            property.setPolicy(new KeepNewestBuildsPolicy(5));
+            p.addProperty(property);
+            p.setDefinition(new CpsFlowDefinition(
+                    """
+                            semaphore 'before'
+                            milestone ordinal: 1, concurrency: 1
+                            semaphore 'after'
+                            """, true));
+            WorkflowRun b1 = p.scheduleBuild2(0).waitForStart();
+            SemaphoreStep.waitForStart("before/1", b1);
+            WorkflowRun b2 = p.scheduleBuild2(0).waitForStart();
+            SemaphoreStep.waitForStart("before/2", b2);
+            SemaphoreStep.success("before/2", null);
+            SemaphoreStep.waitForStart("after/2", b2);
+            // #1 passes the milestone last, but is the oldest of the two builds past it
+            SemaphoreStep.success("before/1", null);
+            r.assertBuildStatus(Result.NOT_BUILT, r.waitForCompletion(b1));
+            SemaphoreStep.success("after/2", null);
+            r.assertBuildStatusSuccess(r.waitForCompletion(b2));
+        });
+    }
+
+    @Test
+    public void completionsBatchedUntilNextMilestone() throws Throwable {
+        story.then(r -> {
+            long window = CompletionBatcher.WINDOW_MILLIS;
+            CompletionBatcher.WINDOW_MILLIS = 600_000;
+            try {
+                WorkflowJob p = r.jenkins.createProject(WorkflowJob.class, "p");
+                p.setDefinition(new CpsFlowDefinition(
+                        """
+                                milestone 1
+                                semaphore 'wait'
+                                if (currentBuild.number < 3) {
+                                    milestone 2
+                                    semaphore 'done'
+                                }
+                                """, true));
+                WorkflowRun b1 = p.scheduleBuild2(0).waitForStart();
+                SemaphoreStep.waitForStart("wait/1", b1);
+                WorkflowRun b2 = p.scheduleBuild2(0).waitForStart();
+                SemaphoreStep.waitForStart("wait/2", b2);
+                WorkflowRun b3 = p.scheduleBuild2(0).waitForStart();
+                SemaphoreStep.waitForStart("wait/3", b3);
+                WorkflowRun b4 = p.scheduleBuild2(0).waitForStart();
+                SemaphoreStep.waitForStart("wait/4", b4);
+                // #3 and #4 complete past milestone 1 within the window, so #1 and #2 are behind them
+                SemaphoreStep.success("wait/3", null);
+                SemaphoreStep.success("wait/4", null);
+                r.assertBuildStatusSuccess(r.waitForCompletion(b3));
+                r.assertBuildStatusSuccess(r.waitForCompletion(b4));
+                assertTrue(b1.isBuilding());
+                assertTrue(b2.isBuilding());
+                // #2 passing milestone 2 evaluates the batch against its own milestone, so only #1 is cancelled
+                SemaphoreStep.success("wait/2", null);
+                SemaphoreStep.waitForStart("done/2", b2);
+                r.assertBuildStatus(Result.NOT_BUILT, r.waitForCompletion(b1));
+                SemaphoreStep.success("done/2", null);
+                r.assertBuildStatusSuccess(r.waitForCompletion(b2));
+            } finally {
+                CompletionBatcher.WINDOW_MILLIS = window;
+            }
+        });
+    }
+
+    @Test
+    public void debounceSupersedesWaitingBuild() throws Throwable {
+        story.then(r -> {
+            WorkflowJob p = r.jenkins.createProject(WorkflowJob.class, "p");
+            p.setDefinition(new CpsFlowDefinition(
+                    """
+                            milestone ordinal: 1, debounce: currentBuild.number == 1 ? 600 : 1
+                            echo 'Passed milestone'
+                            """, true));
+            WorkflowRun b1 = p.scheduleBuild2(0).waitForStart();
+            r.waitForMessage("Waiting 600s for newer builds at milestone 1", b1);
+            // #2 reaches the milestone while #1 is still waiting
+            WorkflowRun b2 = p.scheduleBuild2(0).waitForStart();
+            r.assertBuildStatus(Result.NOT_BUILT, r.waitForCompletion(b1));
+            r.assertLogNotContains("Passed milestone", b1);
+            r.assertBuildStatusSuccess(r.waitForCompletion(b2));
+            r.assertLogContains("Passed milestone", b2);
+        });
+    }
+
+    @Test
+    public void debounceSurvivesRestart() throws Throwable {
+        story.then(r -> {
+            WorkflowJob p = r.jenkins.createProject(WorkflowJob.class, "p");
+            p.setDefinition(new CpsFlowDefinition(
+                    """
+                            milestone ordinal: 1, debounce: 5
+                            echo 'Passed milestone'
+                            """, true));
+            WorkflowRun b1 = p.scheduleBuild2(0).waitForStart();
+            r.waitForMessage("Waiting 5s for newer builds at milestone 1", b1);
+        });
+        story.then(r -> {
+            WorkflowRun b1 = r.jenkins.getItemByFullName("p", WorkflowJob.class).getBuildByNumber(1);
+            r.assertBuildStatusSuccess(r.waitForCompletion(b1));
+            r.assertLogContains("Passed milestone", b1);
+        });
+    }
+
+    @Test
+    public void flightRecorderEvents() throws Throwable {
+        story.then(r -> {
+            WorkflowJob p = r.jenkins.createProject(WorkflowJob.class, "p");
+            p.setDefinition(new CpsFlowDefinition(
+                    """
+                            milestone 1
+                            milestone 2
+                            """, true));
+            Path dump = Files.createTempFile("milestones", ".jfr");
+            try (Recording recording = new Recording()) {
+                recording.enable("org.jenkinsci.plugins.pipeline.milestone.Pass");
+                recording.enable("org.jenkinsci.plugins.pipeline.milestone.OrdinalScan");
+                recording.start();
+                r.buildAndAssertSuccess(p);
+                recording.stop();
+                recording.dump(dump);
+            }
+            List<RecordedEvent> events = RecordingFile.readAllEvents(dump);
+            Files.delete(dump);
+            assertEquals(List.of(1, 2), events.stream()
+                    .filter(e -> e.getEventType().getName().endsWith(".Pass"))
+                    .map(e -> e.getInt("ordinal"))
+                    .sorted()
+                    .toList());
+            assertTrue(events.stream()
+                    .filter(e -> e.getEventType().getName().endsWith(".OrdinalScan"))
+                    .allMatch(e -> "p".equals(e.getString("job")) && e.getInt("nodes") > 0));
+        });
+    }
+
     @Issue("JENKINS-38464")
     @Test
     public void milestoneAllowedOutsideParallel() throws Throwable {
@@ -243,6 +488,106 @@ public class MilestoneStepTest {
         });
     }
 
+    @Test
+    public void milestoneAllowedInsideSingleBranchParallel() throws Throwable {
+        story.then(r -> {
+            WorkflowJob p = r.jenkins.createProject(WorkflowJob.class, "p");
+            p.setDefinition(new CpsFlowDefinition(
+                    """
+                            parallel one: {
+                              milestone 1
+                            }
+                            milestone 2
+                            """, true));
+            r.assertBuildStatusSuccess(p.scheduleBuild2(0));
+        });
+    }
+
+    @Test
+    public void milestoneDoesNotBlockOtherBranches() throws Throwable {
+        story.then(r -> assertMilestoneDoesNotBlockOtherBranches(r, "milestone ordinal: 1, unsafe: true", "trying to pass milestone 1"));
+    }
+
+    @Test
+    public void debouncedMilestoneDoesNotBlockOtherBranches() throws Throwable {
+        story.then(r -> assertMilestoneDoesNotBlockOtherBranches(r, "milestone ordinal: 1, unsafe: true, debounce: 1", "Entering debounced milestone"));
+    }
+
+    /**
+     * Holds the thread running the milestone of a branch when it logs the given message, while the other branch runs.
+     */
+    private static void assertMilestoneDoesNotBlockOtherBranches(JenkinsRule r, String milestone, String message) throws Exception {
+        var passing = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        Handler handler = new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                if (record.getMessage().contains(message)) {
+                    passing.countDown();
+                    try {
+                        release.await(30, TimeUnit.SECONDS);
+                    } catch (InterruptedException x) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+
+            @Override
+            public void flush() {}
+
+            @Override
+            public void close() {}
+        };
+        Logger logger = Logger.getLogger(MilestoneStep.class.getPackage().getName());
+        logger.addHandler(handler);
+        try {
+            WorkflowJob p = r.jenkins.createProject(WorkflowJob.class, "p");
+            p.setDefinition(new CpsFlowDefinition(
+                    "parallel one: { " + milestone + " }, two: { semaphore 'other' }", true));
+            WorkflowRun b1 = p.scheduleBuild2(0).waitForStart();
+            assertTrue(passing.await(30, TimeUnit.SECONDS));
+            // The milestone is still being handled, yet the CPS VM thread runs the other branch
+            SemaphoreStep.waitForStart("other/1", b1);
+            release.countDown();
+            SemaphoreStep.success("other/1", null);
+            r.assertBuildStatusSuccess(r.waitForCompletion(b1));
+        } finally {
+            release.countDown();
+            logger.removeHandler(handler);
+        }
+    }
+
+    @Test
+    public void resumedBuildsTrackedFromLatestMilestoneOfAnyBranch() throws Throwable {
+        story.then(r -> {
+            WorkflowJob p = r.jenkins.createProject(WorkflowJob.class, "p");
+            p.setDefinition(new CpsFlowDefinition(
+                    """
+                            milestone 1
+                            parallel one: { semaphore 'one' }, two: { semaphore 'two' }
+                            milestone 2
+                            echo 'Passed second milestone'
+                            """, true));
+            WorkflowRun b1 = p.scheduleBuild2(0).waitForStart();
+            SemaphoreStep.waitForStart("one/1", b1);
+            SemaphoreStep.waitForStart("two/1", b1);
+            WorkflowRun b2 = p.scheduleBuild2(0).waitForStart();
+            SemaphoreStep.waitForStart("one/2", b2);
+            SemaphoreStep.waitForStart("two/2", b2);
+        });
+        story.then(r -> {
+            WorkflowJob p = r.jenkins.getItemByFullName("p", WorkflowJob.class);
+            WorkflowRun b1 = p.getBuildByNumber(1);
+            WorkflowRun b2 = p.getBuildByNumber(2);
+            SemaphoreStep.success("one/2", null);
+            SemaphoreStep.success("two/2", null);
+            r.assertBuildStatusSuccess(r.waitForCompletion(b2));
+            // #1 resumed at milestone 1 and gets cancelled once #2 passes milestone 2, without reaching it
+            r.assertBuildStatus(Result.NOT_BUILT, r.waitForCompletion(b1));
+            r.assertLogNotContains("Passed second milestone", b1);
+        });
+    }
+
     @Test
     public void ordinals() throws Throwable {
         story.then(r -> {
@@ -286,6 +631,14 @@ public class MilestoneStepTest {
             t.assertRoundTrip(lacksOrdinal, "milestone()");
             hasOrdinal.setLabel("");
             t.assertRoundTrip(hasOrdinal, "milestone 1");
+            hasOrdinal.setParallel(true);
+            t.assertRoundTrip(hasOrdinal, "milestone ordinal: 1, parallel: true");
+            hasOrdinal.setParallel(false);
+            hasOrdinal.setConcurrency(2);
+            t.assertRoundTrip(hasOrdinal, "milestone concurrency: 2, ordinal: 1");
+            hasOrdinal.setConcurrency(0);
+            hasOrdinal.setDebounce(30);
+            t.assertRoundTrip(hasOrdinal, "milestone debounce: 30, ordinal: 1");
         });
     }
 
@@ -458,4 +811,242 @@ public class MilestoneStepTest {
         r.assertBuildStatus(Result.SUCCESS, r.waitForCompletion(b1));
     });
     }
+
+    @Test
+    public void legacyDescriptorConfigDiscarded() throws Throwable {
+        story.then(r -> {
+            File legacy = new File(r.jenkins.getRootDir(), MilestoneStep.class.getName() + ".xml");
+            Files.writeString(legacy.toPath(), """
+                    <?xml version='1.1' encoding='UTF-8'?>
+                    <org.jenkinsci.plugins.pipeline.milestone.MilestoneStep_-DescriptorImpl plugin="pipeline-milestone-step">
+                      <milestonesByOrdinalByJob class="tree-map">
+                        <entry>
+                          <string>p</string>
+                          <tree-map/>
+                        </entry>
+                      </milestonesByOrdinalByJob>
+                    </org.jenkinsci.plugins.pipeline.milestone.MilestoneStep_-DescriptorImpl>
+                    """);
+        });
+        story.then(r -> {
+            assertFalse(new File(r.jenkins.getRootDir(), MilestoneStep.class.getName() + ".xml").exists());
+            WorkflowJob p = r.jenkins.createProject(WorkflowJob.class, "p");
+            p.setDefinition(new CpsFlowDefinition("milestone()", true));
+            r.assertBuildStatusSuccess(p.scheduleBuild2(0));
+        });
+    }
+
+    @Test
+    public void stageMilestones() throws Throwable {
+        story.then(r -> {
+            WorkflowJob p = r.jenkins.createProject(WorkflowJob.class, "p");
+            var property = new MilestoneJobProperty();
+            property.setStageMilestones(true);
+            p.addProperty(property);
+            p.setDefinition(new CpsFlowDefinition(
+                    """
+                            stage('build') {
+                                semaphore 'build'
+                            }
+                            stage('test') {
+                                echo 'Testing'
+                            }
+                            """, true));
+            WorkflowRun b1 = p.scheduleBuild2(0).waitForStart();
+            SemaphoreStep.waitForStart("build/1", b1);
+            WorkflowRun b2 = p.scheduleBuild2(0).waitForStart();
+            SemaphoreStep.waitForStart("build/2", b2);
+            SemaphoreStep.success("build/2", null);
+            r.assertBuildStatusSuccess(r.waitForCompletion(b2));
+            r.assertLogNotContains("Trying to pass milestone", b2);
+            // #2 passed the milestone of the test stage
+            SemaphoreStep.success("build/1", null);
+            r.assertBuildStatus(Result.NOT_BUILT, r.waitForCompletion(b1));
+            r.assertLogNotContains("Testing", b1);
+        });
+    }
+
+    @Test
+    public void stageMilestoneCancelsOvertakenBuild() throws Throwable {
+        story.then(r -> {
+            WorkflowJob p = r.jenkins.createProject(WorkflowJob.class, "p");
+            var property = new MilestoneJobProperty();
+            property.setStageMilestones(true);
+            p.addProperty(property);
+            p.setDefinition(new CpsFlowDefinition(
+                    """
+                            stage('build') {
+                                semaphore 'build'
+                            }
+                            stage('test') {
+                                echo 'Testing'
+                                semaphore 'test'
+                            }
+                            """, true));
+            WorkflowRun b1 = p.scheduleBuild2(0).waitForStart();
+            SemaphoreStep.waitForStart("build/1", b1);
+            WorkflowRun b2 = p.scheduleBuild2(0).waitForStart();
+            SemaphoreStep.success("build/2", null);
+            SemaphoreStep.waitForStart("test/1", b2);
+            // #2 is in the test stage, so #1 gets cancelled when entering it, without reaching the end of its body
+            SemaphoreStep.success("build/1", null);
+            r.assertBuildStatus(Result.NOT_BUILT, r.waitForCompletion(b1));
+            SemaphoreStep.success("test/1", null);
+            r.assertBuildStatusSuccess(r.waitForCompletion(b2));
+        });
+    }
+
+    @Test
+    public void escalatesIgnoredCancellation() throws Throwable {
+        story.then(r -> {
+            CancellationEscalator.TERM_SECONDS = 1;
+            CancellationEscalator.KILL_SECONDS = 1;
+            try {
+                WorkflowJob p = r.jenkins.createProject(WorkflowJob.class, "p");
+                p.setDefinition(new CpsFlowDefinition(
+                        """
+                                milestone()
+                                if (currentBuild.number == 1) {
+                                    while (true) {
+                                        try {
+                                            sleep 60
+                                        } catch (e) {
+                                            echo 'ignoring interruption'
+                                        }
+                                    }
+                                }
+                                """, true));
+                WorkflowRun b1 = p.scheduleBuild2(0).waitForStart();
+                r.waitForMessage("Sleeping for", b1);
+                r.assertBuildStatusSuccess(p.scheduleBuild2(0));
+                r.waitForCompletion(b1);
+                r.assertLogContains("ignoring interruption", b1);
+                assertEquals(2, MilestoneStatistics.get().getEscalated());
+            } finally {
+                CancellationEscalator.TERM_SECONDS = 0;
+                CancellationEscalator.KILL_SECONDS = 0;
+            }
+        });
+    }
+
+    @Test
+    public void leakedMilestonesReclaimed() throws Throwable {
+        story.then(r -> {
+            WorkflowJob p = r.jenkins.createProject(WorkflowJob.class, "p");
+            p.setDefinition(new CpsFlowDefinition("milestone(); semaphore 'wait'", true));
+            WorkflowRun b1 = p.scheduleBuild2(0).waitForStart();
+            SemaphoreStep.waitForStart("wait/1", b1);
+            var storage = (DefaultMilestoneStorage) MilestoneStepExecution.getStorage();
+            // as if the completion of #5 had been missed
+            storage.store(p, 5, null);
+            var reconciler = ExtensionList.lookupSingleton(MilestoneReconciler.class);
+            reconciler.doRun();
+            reconciler.doRun();
+            assertEquals(Set.of(1), storage.trackedBuilds(p));
+            assertEquals(1, MilestoneStatistics.get().getReclaimed());
+            SemaphoreStep.success("wait/1", null);
+            r.assertBuildStatusSuccess(r.waitForCompletion(b1));
+        });
+    }
+
+    @Test
+    public void supersededBuildFailsFastAtCostlySteps() throws Throwable {
+        story.then(r -> {
+            SupersededStepListener.ENABLED = true;
+            SupersededStepListener.STEPS = "echo";
+            try {
+                WorkflowJob p = r.jenkins.createProject(WorkflowJob.class, "p");
+                p.setDefinition(new CpsFlowDefinition("milestone 1; semaphore 'wait'; echo 'costly'; milestone 2", true));
+                WorkflowRun b1 = p.scheduleBuild2(0).waitForStart();
+                SemaphoreStep.waitForStart("wait/1", b1);
+                var storage = (DefaultMilestoneStorage) MilestoneStepExecution.getStorage();
+                assertFalse(storage.isSuperseded(b1));
+                assertEquals(Integer.valueOf(1), storage.newestPassedOrdinal(p));
+                // as if a newer build had already passed milestone 2
+                storage.store(p, 5, 2);
+                storage.raiseWatermark(p, 5, 2);
+                assertTrue(storage.isSuperseded(b1));
+                SemaphoreStep.success("wait/1", null);
+                r.assertBuildStatus(Result.NOT_BUILT, r.waitForCompletion(b1));
+                r.assertLogNotContains("costly", b1);
+                storage.clear(p, 5);
+                assertNull(storage.newestPassedOrdinal(p));
+            } finally {
+                SupersededStepListener.ENABLED = false;
+                SupersededStepListener.STEPS = "node,lock,build,archiveArtifacts,stash";
+            }
+        });
+    }
+
+    @Test
+    public void cancellationPropagatedDownstream() throws Throwable {
+        story.then(r -> {
+            DownstreamCancellation.ENABLED = true;
+            try {
+                WorkflowJob d = r.jenkins.createProject(WorkflowJob.class, "d");
+                d.setDefinition(new CpsFlowDefinition("semaphore 'down'", true));
+                WorkflowJob p = r.jenkins.createProject(WorkflowJob.class, "p");
+                p.setDefinition(new CpsFlowDefinition("milestone 1; semaphore 'up'; milestone 2", true));
+                WorkflowRun b1 = p.scheduleBuild2(0).waitForStart();
+                SemaphoreStep.waitForStart("up/1", b1);
+                // as if triggered by the build step without waiting
+                WorkflowRun d1 = d.scheduleBuild2(0, new CauseAction(new Cause.UpstreamCause(b1))).waitForStart();
+                SemaphoreStep.waitForStart("down/1", d1);
+                WorkflowRun b2 = p.scheduleBuild2(0).waitForStart();
+                SemaphoreStep.waitForStart("up/2", b2);
+                SemaphoreStep.success("up/2", null);
+                r.assertBuildStatusSuccess(r.waitForCompletion(b2));
+                r.assertBuildStatus(Result.NOT_BUILT, r.waitForCompletion(b1));
+                r.assertBuildStatus(Result.NOT_BUILT, r.waitForCompletion(d1));
+                r.assertLogContains("Superseded by #2", d1);
+            } finally {
+                DownstreamCancellation.ENABLED = false;
+            }
+        });
+    }
+
+    @Test
+    public void timelineExposedThroughApi() throws Throwable {
+        story.then(r -> {
+            WorkflowJob p = r.jenkins.createProject(WorkflowJob.class, "p");
+            p.setDefinition(new CpsFlowDefinition("milestone label: 'built'; semaphore 'wait'; milestone label: 'tested'", true));
+            WorkflowRun b1 = p.scheduleBuild2(0).waitForStart();
+            SemaphoreStep.waitForStart("wait/1", b1);
+            WorkflowRun b2 = p.scheduleBuild2(0).waitForStart();
+            SemaphoreStep.waitForStart("wait/2", b2);
+            SemaphoreStep.success("wait/2", null);
+            r.assertBuildStatusSuccess(r.waitForCompletion(b2));
+            r.assertBuildStatus(Result.NOT_BUILT, r.waitForCompletion(b1));
+            var entries = r.createWebClient().getJSON("job/p/1/milestones/api/json").getJSONObject().getJSONArray("entries");
+            assertEquals(2, entries.size());
+            assertEquals("built", entries.getJSONObject(0).getString("label"));
+            assertEquals("PASSED", entries.getJSONObject(0).getString("outcome"));
+            assertEquals(0, entries.getJSONObject(1).getInt("ordinal"));
+            assertEquals("CANCELLED", entries.getJSONObject(1).getString("outcome"));
+            assertEquals("p#2", entries.getJSONObject(1).getString("cancelledBy"));
+            var passed = b2.getAction(MilestoneTimelineAction.class).getEntries();
+            assertEquals(List.of(0, 1), passed.stream().map(MilestoneTimelineAction.Entry::getOrdinal).toList());
+            assertEquals("tested", passed.get(1).getLabel());
+        });
+    }
+
+    @Test
+    public void latenciesExposedThroughApi() throws Throwable {
+        story.then(r -> {
+            WorkflowJob p = r.jenkins.createProject(WorkflowJob.class, "p");
+            p.setDefinition(new CpsFlowDefinition(
+                    """
+                            milestone label: 'built'
+                            sleep time: 100, unit: 'MILLISECONDS'
+                            milestone label: 'tested'
+                            """, true));
+            r.assertBuildStatusSuccess(p.scheduleBuild2(0));
+            r.assertBuildStatusSuccess(p.scheduleBuild2(0));
+            var milestones = r.createWebClient().getJSON("job/p/milestoneLatency/api/json").getJSONObject().getJSONArray("milestones");
+            assertEquals(2, milestones.size());
+            assertEquals("tested", milestones.getJSONObject(1).getString("label"));
+            assertEquals(2, milestones.getJSONObject(1).getInt("count"));
+            assertTrue(milestones.getJSONObject(1).getLong("p50") >= 100);
+        });
+    }
 }
@@ -0,0 +1,83 @@
+package org.jenkinsci.plugins.pipeline.milestone;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class MilestoneTraceTest {
+    @Test
+    public void roundtrip() throws Exception {
+        byte[] trace = trace();
+        try (var reader = new MilestoneTrace.Reader(new ByteArrayInputStream(trace))) {
+            var first = reader.next();
+            assertEquals(MilestoneTrace.STORE, first.type());
+            assertEquals("folder/p", first.job());
+            assertEquals(1, first.build());
+            assertNull(first.value());
+            assertEquals(Integer.valueOf(0), reader.next().value());
+            reader.next();
+            var pass = reader.next();
+            assertEquals(2, pass.build());
+            assertEquals(Integer.valueOf(1), pass.value());
+            var cancel = reader.next();
+            assertEquals(MilestoneTrace.CANCEL, cancel.type());
+            assertEquals(1, cancel.build());
+            assertEquals(Integer.valueOf(2), cancel.value());
+            assertEquals(MilestoneTrace.CLEAR, reader.next().type());
+            assertEquals(MilestoneTrace.CLEAR, reader.next().type());
+            assertNull(reader.next());
+        }
+    }
+
+    @Test
+    public void replay() throws Exception {
+        var decisions = new ByteArrayOutputStream();
+        var replay = new MilestoneTraceReplay(new DefaultMilestoneStorage(), true, new PrintStream(decisions, true, StandardCharsets.UTF_8));
+        replay.replay(new ByteArrayInputStream(trace()));
+        assertEquals("folder/p#1 superseded by #2 at milestone 1\n", decisions.toString(StandardCharsets.UTF_8).replace("\r", ""));
+        var out = new ByteArrayOutputStream();
+        replay.report(new PrintStream(out, true, StandardCharsets.UTF_8));
+        String report = out.toString(StandardCharsets.UTF_8);
+        assertTrue(report, report.contains("Replayed 6 calls"));
+        assertTrue(report, report.contains("Cancellations: 1 selected, 1 recorded, 1 in both"));
+    }
+
+    @Test
+    public void appendedTracesReadAsOne() throws Exception {
+        var appended = new ByteArrayOutputStream();
+        appended.write(trace());
+        appended.write(trace());
+        try (var reader = new MilestoneTrace.Reader(new ByteArrayInputStream(appended.toByteArray()))) {
+            int events = 0;
+            long nanos = 0;
+            MilestoneTrace.Event event;
+            while ((event = reader.next()) != null) {
+                assertEquals("folder/p", event.job());
+                assertTrue(event.nanos() >= nanos);
+                nanos = event.nanos();
+                events++;
+            }
+            assertEquals(14, events);
+        }
+    }
+
+    private static byte[] trace() throws Exception {
+        var out = new ByteArrayOutputStream();
+        try (var writer = new MilestoneTrace.Writer(out)) {
+            writer.store("folder/p", 1, null);
+            writer.store("folder/p", 1, 0);
+            writer.store("folder/p", 2, null);
+            writer.store("folder/p", 2, 1);
+            writer.cancel("folder/p", 1, 2);
+            writer.clear("folder/p", 1);
+            writer.clear("folder/p", 2);
+        }
+        return out.toByteArray();
+    }
+}